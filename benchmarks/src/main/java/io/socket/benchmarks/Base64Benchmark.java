@@ -0,0 +1,62 @@
+package io.socket.benchmarks;
+
+import io.socket.engineio.parser.Base64;
+import io.socket.engineio.parser.Base64Codec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The legacy {@link Base64} class against {@link Base64Codec}, which is what the parser uses for
+ * binary packets over polling.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class Base64Benchmark {
+
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    private byte[] data;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        data = Payloads.binary(size);
+        encoded = Base64.encodeToString(data, Base64.NO_WRAP);
+    }
+
+    @Benchmark
+    public String encodeLegacy() {
+        return Base64.encodeToString(data, Base64.NO_WRAP);
+    }
+
+    @Benchmark
+    public String encodeCodec() {
+        return Base64Codec.encodeToString(data, 0, data.length);
+    }
+
+    @Benchmark
+    public byte[] decodeLegacy() {
+        return Base64.decode(encoded, Base64.DEFAULT);
+    }
+
+    @Benchmark
+    public byte[] decodeCodec() {
+        return Base64Codec.decode(encoded, 0, encoded.length());
+    }
+}
@@ -0,0 +1,77 @@
+package io.socket.benchmarks;
+
+import io.socket.emitter.Emitter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emitting to a handful of listeners, which is what every packet goes through (transport, socket
+ * and user listeners), and registering/unregistering a listener, as done per request and per probe.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EmitterBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int listeners;
+
+    private Emitter emitter;
+    private Emitter.Listener listener;
+    private Object message;
+
+    @Setup
+    public void setup(final Blackhole bh) {
+        emitter = new Emitter();
+        for (int i = 0; i < listeners; i++) {
+            emitter.on("message", new Emitter.Listener() {
+                @Override
+                public void call(Object... args) {
+                    bh.consume(args);
+                }
+            });
+        }
+        listener = new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {}
+        };
+        message = Payloads.text(64);
+    }
+
+    @Benchmark
+    public Emitter emit() {
+        return emitter.emit("message", message);
+    }
+
+    @Benchmark
+    public Emitter emitWithoutListeners() {
+        return emitter.emit("close", message);
+    }
+
+    @Benchmark
+    public Emitter onOff() {
+        emitter.on("drain", listener);
+        return emitter.off("drain", listener);
+    }
+
+    @Benchmark
+    public Emitter onceEmit() {
+        emitter.once("drain", listener);
+        return emitter.emit("drain");
+    }
+}
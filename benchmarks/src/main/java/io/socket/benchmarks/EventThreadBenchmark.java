@@ -0,0 +1,81 @@
+package io.socket.benchmarks;
+
+import io.socket.thread.EventThread;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handing tasks over to the event loop. {@link #execRoundTrip()} submits a single task from another
+ * thread and waits for it, which includes starting the loop thread again once it went idle;
+ * {@link #nextTickBatch()} submits a burst of tasks, as a busy connection does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EventThreadBenchmark {
+
+    private static final int BATCH = 64;
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {}
+    };
+
+    @Benchmark
+    public void execRoundTrip() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        EventThread.exec(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void nextTickBatch() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        for (int i = 0; i < BATCH - 1; i++) {
+            EventThread.nextTick(NOOP);
+        }
+        EventThread.nextTick(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void execOnEventThread() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        EventThread.nextTick(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < BATCH; i++) {
+                    EventThread.exec(NOOP);
+                }
+                latch.countDown();
+            }
+        });
+        latch.await();
+    }
+}
@@ -0,0 +1,60 @@
+package io.socket.benchmarks;
+
+import io.socket.parseqs.ParseQS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query strings as built for every polling request: EIO, transport, sid and the timestamp param,
+ * plus any user-supplied query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ParseQSBenchmark {
+
+    @Param({"0", "8"})
+    public int userParams;
+
+    private Map<String, String> query;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        query = new LinkedHashMap<String, String>();
+        query.put("EIO", "4");
+        query.put("transport", "polling");
+        query.put("sid", "lv_VI97HAXpY6yYWAAAC");
+        query.put("t", "NkK4ooi");
+        for (int i = 0; i < userParams; i++) {
+            query.put("param" + i, "value " + i + " & more");
+        }
+        encoded = ParseQS.encode(query);
+    }
+
+    @Benchmark
+    public String encode() {
+        return ParseQS.encode(query);
+    }
+
+    @Benchmark
+    public Map<String, String> decode() {
+        return ParseQS.decode(encoded);
+    }
+}
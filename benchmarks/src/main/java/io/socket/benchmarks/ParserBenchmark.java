@@ -0,0 +1,169 @@
+package io.socket.benchmarks;
+
+import io.socket.engineio.parser.Packet;
+import io.socket.engineio.parser.Parser;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packet and payload encoding/decoding. Sizes go from a chat-sized message to a large blob, and a
+ * payload holds a batch of mixed text and binary packets, as flushed by the polling transport.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ParserBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    @Param({"16"})
+    public int packetsPerPayload;
+
+    private Packet<String> textPacket;
+    private Packet<byte[]> binaryPacket;
+    private String encodedTextPacket;
+    private byte[] encodedBinaryPacket;
+    private Packet[] packets;
+    private Packet[] encodedPackets;
+    private String encodedPayload;
+
+    @Setup
+    public void setup() {
+        textPacket = new Packet<String>(Packet.MESSAGE, Payloads.text(size));
+        binaryPacket = new Packet<byte[]>(Packet.MESSAGE, Payloads.binary(size));
+
+        Parser.encodePacket(textPacket, new Parser.EncodeCallback() {
+            @Override
+            public void call(Object data) {
+                encodedTextPacket = (String) data;
+            }
+        });
+        Parser.encodePacket(binaryPacket, new Parser.EncodeCallback() {
+            @Override
+            public void call(Object data) {
+                encodedBinaryPacket = (byte[]) data;
+            }
+        });
+
+        packets = new Packet[packetsPerPayload];
+        for (int i = 0; i < packets.length; i++) {
+            packets[i] = i % 4 == 3 ? binaryPacket : textPacket;
+        }
+        encodedPackets = new Packet[packets.length];
+        for (int i = 0; i < packets.length; i++) {
+            encodedPackets[i] = Parser.encodePacket(packets[i]);
+        }
+        Parser.encodePayload(packets, new Parser.EncodeCallback<String>() {
+            @Override
+            public void call(String data) {
+                encodedPayload = data;
+            }
+        });
+    }
+
+    @Benchmark
+    public void encodeTextPacket(final Blackhole bh) {
+        Parser.encodePacket(textPacket, new Parser.EncodeCallback() {
+            @Override
+            public void call(Object data) {
+                bh.consume(data);
+            }
+        });
+    }
+
+    @Benchmark
+    public void encodeBinaryPacket(final Blackhole bh) {
+        Parser.encodePacket(binaryPacket, new Parser.EncodeCallback() {
+            @Override
+            public void call(Object data) {
+                bh.consume(data);
+            }
+        });
+    }
+
+    @Benchmark
+    public Packet decodeTextPacket() {
+        return Parser.decodePacket(encodedTextPacket);
+    }
+
+    @Benchmark
+    public Packet decodeTextPacketView() {
+        return Parser.decodePacketView(encodedTextPacket);
+    }
+
+    @Benchmark
+    public Packet decodeBinaryPacket() {
+        return Parser.decodePacket(encodedBinaryPacket);
+    }
+
+    @Benchmark
+    public void encodePayloadToString(final Blackhole bh) {
+        encodedPackets = new Packet[packets.length];
+        for (int i = 0; i < packets.length; i++) {
+            encodedPackets[i] = Parser.encodePacket(packets[i]);
+        }
+        Parser.encodePayload(packets, new Parser.EncodeCallback<String>() {
+            @Override
+            public void call(String data) {
+                bh.consume(data);
+            }
+        });
+    }
+
+    @Benchmark
+    public Buffer encodePayloadToSink() throws IOException {
+        Buffer sink = new Buffer();
+        Parser.encodePayload(packets, sink);
+        sink.clear();
+        return sink;
+    }
+
+    @Benchmark
+    public Buffer encodePreEncodedPayloadToSink() throws IOException {
+        Buffer sink = new Buffer();
+        Parser.encodePayload(encodedPackets, sink);
+        sink.clear();
+        return sink;
+    }
+
+    @Benchmark
+    public void decodePayloadFromString(final Blackhole bh) {
+        Parser.decodePayload(encodedPayload, new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                bh.consume(packet);
+                return true;
+            }
+        });
+    }
+
+    @Benchmark
+    public void decodePayloadFromSource(final Blackhole bh) throws IOException {
+        Buffer source = new Buffer().writeUtf8(encodedPayload);
+        Parser.decodePayload(source, new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                bh.consume(packet);
+                return true;
+            }
+        });
+    }
+}
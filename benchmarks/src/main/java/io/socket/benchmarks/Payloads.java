@@ -0,0 +1,28 @@
+package io.socket.benchmarks;
+
+import java.util.Random;
+
+final class Payloads {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 {}\":,";
+
+    private Payloads() {}
+
+    /**
+     * A JSON-ish ASCII string of the given length, seeded so that runs are reproducible.
+     */
+    static String text(int size) {
+        Random random = new Random(size);
+        StringBuilder builder = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return builder.toString();
+    }
+
+    static byte[] binary(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,43 @@
+package io.socket.benchmarks;
+
+import io.socket.yeast.Yeast;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timestamp param generated for every polling request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class YeastBenchmark {
+
+    @Benchmark
+    public String yeast() {
+        return Yeast.yeast();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String yeastContended() {
+        return Yeast.yeast();
+    }
+
+    @Benchmark
+    public String encode() {
+        return Yeast.encode(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,168 @@
+package io.socket.engineio.client;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands the events of a socket over to the application executor, one at a time and in order.
+ *
+ * Events are submitted from the event loop only, and kept in a queue of the dispatcher which a single
+ * task of the executor drains. Messages are counted against the capacity of the queue, and handled
+ * according to the overflow policy once it is full; other events are always queued, so that listeners
+ * never miss `open` or `close`.
+ */
+/*package*/ class CallbackDispatcher {
+
+    private static final Logger logger = Logger.getLogger(CallbackDispatcher.class.getName());
+
+    private final Executor executor;
+    private final int capacity;
+    private final Socket.OverflowPolicy policy;
+
+    // events and messages, in order
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicInteger pendingMessages = new AtomicInteger();
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            Runnable task;
+            while ((task = CallbackDispatcher.this.tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.log(Level.SEVERE, "Task threw exception", t);
+                }
+            }
+            CallbackDispatcher.this.scheduled.set(false);
+            // a task offered after the queue was found empty
+            if (!CallbackDispatcher.this.tasks.isEmpty()) {
+                CallbackDispatcher.this.schedule();
+            }
+        }
+    };
+
+    /**
+     * @param executor the application executor.
+     * @param capacity the maximum number of pending messages, or 0 for no limit.
+     * @param policy what to do with a message once the queue is full.
+     */
+    CallbackDispatcher(Executor executor, int capacity, Socket.OverflowPolicy policy) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        this.executor = executor;
+        this.capacity = capacity;
+        this.policy = policy != null ? policy : Socket.OverflowPolicy.CLOSE;
+    }
+
+    void execute(Runnable task) {
+        this.tasks.offer(task);
+        this.schedule();
+    }
+
+    /**
+     * Queues a message.
+     *
+     * @return false if the queue is full and the socket must be closed, in which case nothing was queued.
+     */
+    boolean executeMessage(Runnable task) {
+        if (this.capacity == 0) {
+            // nothing to track without a limit
+            this.execute(task);
+            return true;
+        }
+
+        if (this.pendingMessages.get() >= this.capacity) {
+            switch (this.policy) {
+                case DROP_NEWEST:
+                    logger.fine("callback queue full, dropping the newest message");
+                    return true;
+                case DROP_OLDEST:
+                    logger.fine("callback queue full, dropping the oldest message");
+                    this.dropOldest();
+                    break;
+                default:
+                    return false;
+            }
+        }
+
+        this.pendingMessages.incrementAndGet();
+        this.execute(new MessageTask(task));
+        return true;
+    }
+
+    /**
+     * @return the number of messages waiting for the application executor, or 0 if there is no limit.
+     */
+    int pendingMessages() {
+        return this.pendingMessages.get();
+    }
+
+    private void schedule() {
+        if (this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this.drain);
+            } catch (RejectedExecutionException e) {
+                this.scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void dropOldest() {
+        for (Runnable task : this.tasks) {
+            // the oldest message may be running already
+            if (task instanceof MessageTask && ((MessageTask) task).drop()) {
+                this.tasks.remove(task);
+                return;
+            }
+        }
+    }
+
+
+    private class MessageTask implements Runnable {
+
+        // cleared once run or dropped, so that the task does not hold the packet any longer
+        private volatile Runnable task;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        MessageTask(Runnable task) {
+            this.task = task;
+        }
+
+        boolean drop() {
+            if (this.claim()) {
+                this.task = null;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean claim() {
+            if (this.claimed.compareAndSet(false, true)) {
+                CallbackDispatcher.this.pendingMessages.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            if (!this.claim()) {
+                // dropped
+                return;
+            }
+            Runnable task = this.task;
+            this.task = null;
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package io.socket.engineio.client;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The dispatcher of the default OkHttp client, whose limits follow the number of open sockets using it.
+ *
+ * OkHttp runs 5 requests per host by default, while a polling socket holds a long-poll and often a write
+ * (and a WebSocket probe while upgrading), and a WebSocket holds a dispatcher thread for its whole life.
+ * With more than a couple of sockets to the same server, requests would wait for each other. The limits
+ * are raised to 3 requests per open socket instead, and the time requests spend waiting for the
+ * dispatcher is recorded.
+ */
+public final class PollingDispatcher {
+
+    private static final int REQUESTS_PER_SOCKET = 3;
+    private static final int MIN_REQUESTS_PER_HOST = 5;
+    private static final int MIN_REQUESTS = 64;
+
+    private static final Dispatcher dispatcher = new Dispatcher();
+    private static final ConnectionPool connectionPool = new ConnectionPool(64, 5, TimeUnit.MINUTES);
+
+    private static final AtomicInteger sockets = new AtomicInteger();
+    private static final AtomicLong calls = new AtomicLong();
+    private static final AtomicLong queueWaitNanos = new AtomicLong();
+    private static final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    private static final Interceptor interceptor = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Enqueued enqueued = chain.request().tag(Enqueued.class);
+            if (enqueued != null) {
+                record(System.nanoTime() - enqueued.nanoTime);
+            }
+            return chain.proceed(chain.request());
+        }
+    };
+
+    static {
+        dispatcher.setMaxRequestsPerHost(MIN_REQUESTS_PER_HOST);
+        dispatcher.setMaxRequests(MIN_REQUESTS);
+    }
+
+    private PollingDispatcher() {}
+
+    /**
+     * Marks the time a request is handed to OkHttp, so that its wait for the dispatcher can be recorded.
+     */
+    public static Request.Builder tag(Request.Builder builder) {
+        return builder.tag(Enqueued.class, new Enqueued(System.nanoTime()));
+    }
+
+    /*package*/ static Dispatcher dispatcher() {
+        return dispatcher;
+    }
+
+    /*package*/ static ConnectionPool connectionPool() {
+        return connectionPool;
+    }
+
+    /*package*/ static Interceptor interceptor() {
+        return interceptor;
+    }
+
+    /*package*/ static void register() {
+        sockets.incrementAndGet();
+        resize();
+    }
+
+    /*package*/ static void unregister() {
+        sockets.decrementAndGet();
+        resize();
+    }
+
+    private static synchronized void resize() {
+        // read under the lock, so that the latest count is applied last
+        int count = sockets.get();
+        dispatcher.setMaxRequestsPerHost(Math.max(MIN_REQUESTS_PER_HOST, REQUESTS_PER_SOCKET * count));
+        dispatcher.setMaxRequests(Math.max(MIN_REQUESTS, REQUESTS_PER_SOCKET * count));
+    }
+
+    private static void record(long waitNanos) {
+        calls.incrementAndGet();
+        queueWaitNanos.addAndGet(waitNanos);
+        long max;
+        do {
+            max = maxQueueWaitNanos.get();
+        } while (waitNanos > max && !maxQueueWaitNanos.compareAndSet(max, waitNanos));
+    }
+
+    /**
+     * @return the number of open sockets using the default client.
+     */
+    public static int sockets() {
+        return sockets.get();
+    }
+
+    /**
+     * @return the number of requests waiting for the dispatcher.
+     */
+    public static int queuedCalls() {
+        return dispatcher.queuedCallsCount();
+    }
+
+    /**
+     * @return the number of requests being run, including WebSocket connections.
+     */
+    public static int runningCalls() {
+        return dispatcher.runningCallsCount();
+    }
+
+    /**
+     * @return the number of requests whose wait for the dispatcher has been recorded.
+     */
+    public static long calls() {
+        return calls.get();
+    }
+
+    /**
+     * @return the total time requests spent waiting for the dispatcher, in nanoseconds.
+     */
+    public static long queueWaitNanos() {
+        return queueWaitNanos.get();
+    }
+
+    /**
+     * @return the longest time a request spent waiting for the dispatcher, in nanoseconds.
+     */
+    public static long maxQueueWaitNanos() {
+        return maxQueueWaitNanos.get();
+    }
+
+
+    private static final class Enqueued {
+
+        final long nanoTime;
+
+        Enqueued(long nanoTime) {
+            this.nanoTime = nanoTime;
+        }
+    }
+}
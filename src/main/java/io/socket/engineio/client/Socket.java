@@ -4,6 +4,7 @@ import org.json.JSONException;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -14,10 +15,15 @@ import io.socket.emitter.Emitter;
 import io.socket.engineio.client.transports.Polling;
 import io.socket.engineio.client.transports.PollingXHR;
 import io.socket.engineio.client.transports.WebSocket;
+import io.socket.engineio.parser.EncodedPacket;
 import io.socket.engineio.parser.Packet;
+import io.socket.engineio.parser.PacketType;
 import io.socket.engineio.parser.Parser;
 import io.socket.parseqs.ParseQS;
-import io.socket.thread.EventThread;
+import io.socket.thread.EventLoop;
+import io.socket.thread.EventLoopGroup;
+import io.socket.thread.VirtualThreads;
+import io.socket.thread.TimerWheel;
 import okhttp3.OkHttpClient;
 
 
@@ -30,8 +36,6 @@ public class Socket extends Emitter {
 
     private static final Logger logger = Logger.getLogger(Socket.class.getName());
 
-    private static final AtomicInteger HEARTBEAT_THREAD_COUNTER = new AtomicInteger();
-
     private static final String PROBE_ERROR = "probe error";
 
 
@@ -76,6 +80,28 @@ public class Socket extends Emitter {
      */
     public static final String EVENT_DRAIN = "drain";
 
+    /**
+     * Called when the amount of data in the write buffer reaches the high watermark.
+     */
+    public static final String EVENT_WRITE_BUFFER_HIGH = "writeBufferHigh";
+
+    /**
+     * Called when the amount of data in the write buffer falls back to the low watermark.
+     */
+    public static final String EVENT_WRITE_BUFFER_LOW = "writeBufferLow";
+
+    /**
+     * Called when a control packet (such as a pong) is flushed, with the packet and the time it waited
+     * in the socket, in nanoseconds.
+     */
+    public static final String EVENT_CONTROL_PACKET_FLUSH = "controlPacketFlush";
+
+    /**
+     * Called after `upgrade`, with the time during which nothing could be written, in nanoseconds: from
+     * the last write over the previous transport to the switch to the new one.
+     */
+    public static final String EVENT_UPGRADE_PAUSE = "upgradePause";
+
     public static final String EVENT_HANDSHAKE = "handshake";
     public static final String EVENT_UPGRADING = "upgrading";
     public static final String EVENT_UPGRADE = "upgrade";
@@ -83,6 +109,12 @@ public class Socket extends Emitter {
     public static final String EVENT_PACKET_CREATE = "packetCreate";
     public static final String EVENT_HEARTBEAT = "heartbeat";
     public static final String EVENT_DATA = "data";
+
+    /**
+     * Called after the messages received together (see {@link Transport#EVENT_PACKETS}) have been emitted
+     * one by one, with the data of all of them as a List.
+     */
+    public static final String EVENT_MESSAGE_BATCH = "messageBatch";
     public static final String EVENT_PING = "ping";
     public static final String EVENT_PONG = "pong";
 
@@ -91,6 +123,11 @@ public class Socket extends Emitter {
      */
     public static final String EVENT_TRANSPORT = "transport";
 
+    /**
+     * Called on the loop when the socket closes, ahead of the close listeners which may run elsewhere.
+     */
+    private static final String EVENT_PROBE_CLOSE = "probeClose";
+
     /**
      * The protocol version.
      */
@@ -106,7 +143,17 @@ public class Socket extends Emitter {
     private boolean upgrade;
     private boolean timestampRequests;
     private boolean upgrading;
+    // writes are held back until the switch to the upgraded transport
+    private boolean pausedForUpgrade;
+    private long upgradePauseStart;
     private boolean rememberUpgrade;
+    private boolean fastUpgrade;
+    private boolean raceTransports;
+    private long raceHeadStart;
+    // nothing is written until a transport wins the race
+    private boolean racing;
+    private boolean binaryAsByteBuffer;
+    private boolean textAsCharSequence;
     /*package*/ int port;
     private int policyPort;
     private int prevBufferLen;
@@ -120,15 +167,36 @@ public class Socket extends Emitter {
     private Map<String, Transport.Options> transportOptions;
     private List<String> upgrades;
     private Map<String, String> query;
-    /*package*/ LinkedList<Packet> writeBuffer = new LinkedList<Packet>();
+    /*package*/ final WriteBuffer writeBuffer;
+    private final Queue<Packet> controlBuffer = new ArrayDeque<Packet>();
+    private final Queue<Long> controlEnqueueTimes = new ArrayDeque<Long>();
+    private Packet[] flushedPackets;
+    private Packet[] sparePackets;
+    private long writeBufferHighWaterMark;
+    private long writeBufferLowWaterMark;
+    private boolean aboveHighWaterMark;
+    private boolean flushing;
+    private boolean registeredWithDispatcher;
+    // the transport messages can be written to from the calling thread, when nothing waits before them
+    private volatile WebSocket directTransport;
+    // the polling transport whose last poll is still in flight after a fast upgrade
+    private Polling upgradedPolling;
+    // the messages handed over to the event loop, but not offered to the write buffer yet
+    private final AtomicInteger handedOverPackets = new AtomicInteger();
+    private boolean drainPending;
+    private long webSocketDrainThreshold;
     /*package*/ Transport transport;
-    private Future pingTimeoutTimer;
+    private TimerWheel.Timeout pingTimeoutTimer;
+    private TimerWheel.Timeout lingerTimer;
+    private long pollingLinger;
+    private long pollingBatchSize;
     private okhttp3.WebSocket.Factory webSocketFactory;
     private okhttp3.Call.Factory callFactory;
     private final Map<String, List<String>> extraHeaders;
+    /*package*/ final EventLoop eventLoop;
+    private final CallbackDispatcher callbackDispatcher;
 
     private ReadyState readyState;
-    private ScheduledExecutorService heartbeatScheduler;
     private final Listener onHeartbeatAsListener = new Listener() {
         @Override
         public void call(Object... args) {
@@ -197,12 +265,23 @@ public class Socket extends Emitter {
         this.path = (opts.path != null ? opts.path : "/engine.io").replaceAll("/$", "") + "/";
         this.timestampParam = opts.timestampParam != null ? opts.timestampParam : "t";
         this.timestampRequests = opts.timestampRequests;
+        this.binaryAsByteBuffer = opts.binaryAsByteBuffer;
+        this.textAsCharSequence = opts.textAsCharSequence;
+        this.writeBuffer = new WriteBuffer(opts.writeBufferMaxPackets, opts.writeBufferMaxBytes);
+        this.writeBufferHighWaterMark = opts.writeBufferHighWaterMark;
+        this.writeBufferLowWaterMark = opts.writeBufferLowWaterMark;
+        this.pollingLinger = opts.pollingLinger;
+        this.pollingBatchSize = opts.pollingBatchSize;
+        this.webSocketDrainThreshold = opts.webSocketDrainThreshold;
         this.transports = new ArrayList<String>(Arrays.asList(opts.transports != null ?
                 opts.transports : new String[]{Polling.NAME, WebSocket.NAME}));
         this.transportOptions = opts.transportOptions != null ?
                 opts.transportOptions : new HashMap<String, Transport.Options>();
         this.policyPort = opts.policyPort != 0 ? opts.policyPort : 843;
         this.rememberUpgrade = opts.rememberUpgrade;
+        this.fastUpgrade = opts.fastUpgrade;
+        this.raceTransports = opts.raceTransports;
+        this.raceHeadStart = opts.raceHeadStart;
         this.callFactory = opts.callFactory != null ? opts.callFactory : defaultCallFactory;
         this.webSocketFactory = opts.webSocketFactory != null ? opts.webSocketFactory : defaultWebSocketFactory;
         if (callFactory == null) {
@@ -212,6 +291,20 @@ public class Socket extends Emitter {
             webSocketFactory = getDefaultOkHttpClient();
         }
         this.extraHeaders = opts.extraHeaders;
+        if (opts.eventLoop != null) {
+            this.eventLoop = opts.eventLoop;
+        } else if (opts.eventLoopGroup != null) {
+            this.eventLoop = opts.eventLoopGroup.next();
+        } else {
+            this.eventLoop = EventLoop.defaultLoop();
+        }
+        Executor callbackExecutor = opts.callbackExecutor;
+        if (callbackExecutor == null && opts.virtualThreadListeners) {
+            callbackExecutor = VirtualThreads.executor();
+        }
+        this.callbackDispatcher = callbackExecutor != null
+                ? new CallbackDispatcher(callbackExecutor, opts.callbackQueueSize, opts.callbackOverflowPolicy)
+                : null;
     }
 
     public static void setDefaultOkHttpWebSocketFactory(okhttp3.WebSocket.Factory factory) {
@@ -226,6 +319,9 @@ public class Socket extends Emitter {
         if (defaultOkHttpClient == null) {
             defaultOkHttpClient = new OkHttpClient.Builder()
                     .readTimeout(1, TimeUnit.MINUTES) // defaults to 10 seconds
+                    .dispatcher(PollingDispatcher.dispatcher())
+                    .connectionPool(PollingDispatcher.connectionPool())
+                    .addInterceptor(PollingDispatcher.interceptor())
                     .build();
         }
         return defaultOkHttpClient;
@@ -237,7 +333,7 @@ public class Socket extends Emitter {
      * @return a reference to to this object.
      */
     public Socket open() {
-        EventThread.exec(new Runnable() {
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
                 String transportName;
@@ -246,7 +342,7 @@ public class Socket extends Emitter {
                 } else if (0 == Socket.this.transports.size()) {
                     // Emit error on next tick so it can be listened to
                     final Socket self = Socket.this;
-                    EventThread.nextTick(new Runnable() {
+                    self.eventLoop.nextTick(new Runnable() {
                         @Override
                         public void run() {
                             self.emit(Socket.EVENT_ERROR, new EngineIOException("No transports available"));
@@ -257,6 +353,17 @@ public class Socket extends Emitter {
                     transportName = Socket.this.transports.get(0);
                 }
                 Socket.this.readyState = ReadyState.OPENING;
+                if ((Socket.this.callFactory == defaultOkHttpClient || Socket.this.webSocketFactory == defaultOkHttpClient)
+                        && !Socket.this.registeredWithDispatcher) {
+                    Socket.this.registeredWithDispatcher = true;
+                    PollingDispatcher.register();
+                }
+                if (Socket.this.raceTransports && !WebSocket.NAME.equals(transportName)
+                        && Socket.this.transports.contains(WebSocket.NAME)
+                        && Socket.this.transports.contains(Polling.NAME)) {
+                    new TransportRace().start();
+                    return;
+                }
                 Transport transport = Socket.this.createTransport(transportName);
                 Socket.this.setTransport(transport);
                 transport.open();
@@ -290,10 +397,14 @@ public class Socket extends Emitter {
         opts.path = options != null ? options.path : this.path;
         opts.timestampRequests = options != null ? options.timestampRequests : this.timestampRequests;
         opts.timestampParam = options != null ? options.timestampParam : this.timestampParam;
+        opts.binaryAsByteBuffer = options != null ? options.binaryAsByteBuffer : this.binaryAsByteBuffer;
+        opts.textAsCharSequence = options != null ? options.textAsCharSequence : this.textAsCharSequence;
+        opts.webSocketDrainThreshold = options != null ? options.webSocketDrainThreshold : this.webSocketDrainThreshold;
         opts.policyPort = options != null ? options.policyPort : this.policyPort;
         opts.callFactory = options != null ? options.callFactory : this.callFactory;
         opts.webSocketFactory = options != null ? options.webSocketFactory : this.webSocketFactory;
         opts.extraHeaders = this.extraHeaders;
+        opts.eventLoop = this.eventLoop;
 
         Transport transport;
         if (WebSocket.NAME.equals(name)) {
@@ -334,6 +445,11 @@ public class Socket extends Emitter {
             public void call(Object... args) {
                 self.onPacket(args.length > 0 ? (Packet) args[0] : null);
             }
+        }).on(Transport.EVENT_PACKETS, new Listener() {
+            @Override
+            public void call(Object... args) {
+                self.onPackets((Packet[]) args[0]);
+            }
         }).on(Transport.EVENT_ERROR, new Listener() {
             @Override
             public void call(Object... args) {
@@ -347,6 +463,46 @@ public class Socket extends Emitter {
         });
     }
 
+    /**
+     * Emits the packets of the poll still in flight after a fast upgrade, holding back those of the new
+     * transport until the poll is over.
+     */
+    private void finishPoll(final Polling polling, final Transport next) {
+        logger.fine("waiting for the last poll");
+        final Socket self = this;
+        this.upgradedPolling = polling;
+        next.holdInbound();
+
+        final Listener done = new Listener() {
+            @Override
+            public void call(Object... args) {
+                if (self.upgradedPolling != polling) return;
+
+                logger.fine("last poll complete");
+                self.upgradedPolling = null;
+                polling.off();
+                polling.cancelRequests();
+                next.releaseInbound();
+            }
+        };
+
+        polling.on(Transport.EVENT_PACKET, new Listener() {
+            @Override
+            public void call(Object... args) {
+                self.onPacket(args.length > 0 ? (Packet) args[0] : null);
+            }
+        }).on(Transport.EVENT_PACKETS, new Listener() {
+            @Override
+            public void call(Object... args) {
+                self.onPackets((Packet[]) args[0]);
+            }
+        });
+        // the server ends the poll with a close packet once the upgrade is done
+        polling.once(Polling.EVENT_POLL_COMPLETE, done);
+        polling.once(Transport.EVENT_CLOSE, done);
+        polling.once(Transport.EVENT_ERROR, done);
+    }
+
     private void probe(final String name) {
         if (logger.isLoggable(Level.FINE)) {
             logger.fine(String.format("probing transport '%s'", name));
@@ -367,7 +523,7 @@ public class Socket extends Emitter {
                 if (logger.isLoggable(Level.FINE)) {
                     logger.fine(String.format("probe transport '%s' opened", name));
                 }
-                Packet<String> packet = new Packet<String>(Packet.PING, "probe");
+                Packet<String> packet = new Packet<String>(PacketType.PING, "probe");
                 transport[0].send(new Packet[] {packet});
                 transport[0].once(Transport.EVENT_PACKET, new Listener() {
                     @Override
@@ -375,7 +531,7 @@ public class Socket extends Emitter {
                         if (failed[0]) return;
 
                         Packet msg = (Packet)args[0];
-                        if (Packet.PONG.equals(msg.type) && "probe".equals(msg.data)) {
+                        if (msg.packetType() == PacketType.PONG && "probe".equals(msg.data)) {
                             if (logger.isLoggable(Level.FINE)) {
                                 logger.fine(String.format("probe transport '%s' pong", name));
                             }
@@ -384,10 +540,8 @@ public class Socket extends Emitter {
                             if (null == transport[0]) return;
                             Socket.priorWebsocketSuccess = WebSocket.NAME.equals(transport[0].name);
 
-                            if (logger.isLoggable(Level.FINE)) {
-                                logger.fine(String.format("pausing current transport '%s'", self.transport.name));
-                            }
-                            ((Polling)self.transport).pause(new Runnable() {
+                            final Polling polling = (Polling) self.transport;
+                            final Runnable onPause = new Runnable() {
                                 @Override
                                 public void run() {
                                     if (failed[0]) return;
@@ -398,14 +552,50 @@ public class Socket extends Emitter {
                                     cleanup[0].run();
 
                                     self.setTransport(transport[0]);
-                                    Packet packet = new Packet(Packet.UPGRADE);
+                                    if (polling.isPolling()) {
+                                        self.finishPoll(polling, transport[0]);
+                                    } else {
+                                        // nothing is read from or written to the polling transport anymore
+                                        polling.cancelRequests();
+                                    }
+                                    Packet packet = new Packet(PacketType.UPGRADE);
                                     transport[0].send(new Packet[]{packet});
                                     self.emit(EVENT_UPGRADE, transport[0]);
                                     transport[0] = null;
                                     self.upgrading = false;
+                                    self.pausedForUpgrade = false;
                                     self.flush();
+                                    self.updateDirectTransport();
+                                    self.emit(EVENT_UPGRADE_PAUSE, System.nanoTime() - self.upgradePauseStart);
+                                }
+                            };
+                            // writes keep going over polling until the transport is paused: right away
+                            // in the fast mode, or else once the pending poll is over
+                            final Runnable pause = new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (failed[0]) return;
+
+                                    if (logger.isLoggable(Level.FINE)) {
+                                        logger.fine(String.format("pausing current transport '%s'", polling.name));
+                                    }
+                                    self.pausedForUpgrade = true;
+                                    self.upgradePauseStart = System.nanoTime();
+                                    polling.pause(onPause, !self.fastUpgrade);
                                 }
-                            });
+                            };
+                            if (self.fastUpgrade || !polling.isPolling()) {
+                                pause.run();
+                            } else {
+                                logger.fine("writing until the pending poll is over");
+                                // emitted before the next poll starts, and the pause is run inline
+                                polling.once(Polling.EVENT_POLL_COMPLETE, new Listener() {
+                                    @Override
+                                    public void call(Object... args) {
+                                        pause.run();
+                                    }
+                                });
+                            }
                         } else {
                             if (logger.isLoggable(Level.FINE)) {
                                 logger.fine(String.format("probe transport '%s' failed", name));
@@ -493,7 +683,7 @@ public class Socket extends Emitter {
                 transport[0].off(Transport.EVENT_OPEN, onTransportOpen);
                 transport[0].off(Transport.EVENT_ERROR, onerror);
                 transport[0].off(Transport.EVENT_CLOSE, onTransportClose);
-                self.off(EVENT_CLOSE, onclose);
+                self.off(EVENT_PROBE_CLOSE, onclose);
                 self.off(EVENT_UPGRADING, onupgrade);
             }
         };
@@ -502,7 +692,7 @@ public class Socket extends Emitter {
         transport[0].once(Transport.EVENT_ERROR, onerror);
         transport[0].once(Transport.EVENT_CLOSE, onTransportClose);
 
-        this.once(EVENT_CLOSE, onclose);
+        this.once(EVENT_PROBE_CLOSE, onclose);
         this.once(EVENT_UPGRADING, onupgrade);
 
         transport[0].open();
@@ -512,8 +702,9 @@ public class Socket extends Emitter {
         logger.fine("socket open");
         this.readyState = ReadyState.OPEN;
         Socket.priorWebsocketSuccess = WebSocket.NAME.equals(this.transport.name);
-        this.emit(EVENT_OPEN);
+        this.emitInbound(EVENT_OPEN);
         this.flush();
+        this.updateDirectTransport();
 
         if (this.readyState == ReadyState.OPEN && this.upgrade && this.transport instanceof Polling) {
             logger.fine("starting upgrade probes");
@@ -531,30 +722,43 @@ public class Socket extends Emitter {
                 logger.fine(String.format("socket received: type '%s', data '%s'", packet.type, packet.data));
             }
 
-            this.emit(EVENT_PACKET, packet);
+            PacketType type = packet.packetType();
+            if (type == PacketType.MESSAGE) {
+                this.emit(EVENT_HEARTBEAT);
+                this.emitMessage(packet);
+                return;
+            }
+
+            this.emitInbound(EVENT_PACKET, packet);
             this.emit(EVENT_HEARTBEAT);
 
-            if (Packet.OPEN.equals(packet.type)) {
-                try {
-                    this.onHandshake(new HandshakeData((String)packet.data));
-                } catch (JSONException e) {
-                    this.emit(EVENT_ERROR, new EngineIOException(e));
-                }
-            } else if (Packet.PING.equals(packet.type)) {
-                this.emit(EVENT_PING);
-                EventThread.exec(new Runnable() {
-                    @Override
-                    public void run() {
-                        Socket.this.sendPacket(Packet.PONG, null);
+            if (type == null) {
+                return;
+            }
+            switch (type) {
+                case OPEN:
+                    try {
+                        this.onHandshake(new HandshakeData((String)packet.data));
+                    } catch (JSONException e) {
+                        this.emitInbound(EVENT_ERROR, new EngineIOException(e));
                     }
-                });
-            } else if (Packet.ERROR.equals(packet.type)) {
-                EngineIOException err = new EngineIOException("server error");
-                err.code = packet.data;
-                this.onError(err);
-            } else if (Packet.MESSAGE.equals(packet.type)) {
-                this.emit(EVENT_DATA, packet.data);
-                this.emit(EVENT_MESSAGE, packet.data);
+                    break;
+                case PING:
+                    this.emitInbound(EVENT_PING);
+                    this.eventLoop.exec(new Runnable() {
+                        @Override
+                        public void run() {
+                            Socket.this.sendControlPacket(PacketType.PONG);
+                        }
+                    });
+                    break;
+                case ERROR:
+                    EngineIOException err = new EngineIOException("server error");
+                    err.code = packet.data;
+                    this.onError(err);
+                    break;
+                default:
+                    break;
             }
         } else {
             if (logger.isLoggable(Level.FINE)) {
@@ -563,8 +767,25 @@ public class Socket extends Emitter {
         }
     }
 
+    private void onPackets(Packet[] packets) {
+        if ((this.readyState != ReadyState.OPEN && this.readyState != ReadyState.CLOSING)
+                || !this.hasListeners(EVENT_MESSAGE_BATCH)) {
+            return;
+        }
+
+        List<Object> messages = new ArrayList<Object>(packets.length);
+        for (Packet packet : packets) {
+            if (packet.packetType() == PacketType.MESSAGE) {
+                messages.add(packet.data);
+            }
+        }
+        if (!messages.isEmpty()) {
+            this.emitInbound(EVENT_MESSAGE_BATCH, Collections.unmodifiableList(messages));
+        }
+    }
+
     private void onHandshake(HandshakeData data) {
-        this.emit(EVENT_HANDSHAKE, data);
+        this.emitInbound(EVENT_HANDSHAKE, data);
         this.id = data.sid;
         this.transport.query.put("sid", data.sid);
         this.upgrades = this.filterUpgrades(Arrays.asList(data.upgrades));
@@ -580,17 +801,18 @@ public class Socket extends Emitter {
     }
 
     private void onHeartbeat() {
-        if (this.pingTimeoutTimer != null) {
-            pingTimeoutTimer.cancel(false);
-        }
-
         long timeout = this.pingInterval + this.pingTimeout;
 
+        // postponing only moves the deadline, which the timer checks when the previous one is reached
+        if (this.pingTimeoutTimer != null && this.pingTimeoutTimer.postpone(timeout, TimeUnit.MILLISECONDS)) {
+            return;
+        }
+
         final Socket self = this;
-        this.pingTimeoutTimer = this.getHeartbeatScheduler().schedule(new Runnable() {
+        this.pingTimeoutTimer = TimerWheel.shared().schedule(new Runnable() {
             @Override
             public void run() {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
                         if (self.readyState == ReadyState.CLOSED) return;
@@ -602,28 +824,121 @@ public class Socket extends Emitter {
     }
 
     private void onDrain() {
-        for (int i = 0; i < this.prevBufferLen; i++) {
-            this.writeBuffer.poll();
+        if (this.flushing) {
+            // the transport drained while being handed the packets, handle it once the flush is over
+            this.drainPending = true;
+            return;
         }
-
+        this.writeBuffer.remove(this.prevBufferLen);
         this.prevBufferLen = 0;
+
+        // the transport is done with the flushed packets, so the array can be used for the next flush
+        if (this.flushedPackets != null) {
+            Arrays.fill(this.flushedPackets, null);
+            this.sparePackets = this.flushedPackets;
+            this.flushedPackets = null;
+        }
+
+        if (this.aboveHighWaterMark && this.writeBuffer.bytes() <= this.writeBufferLowWaterMark) {
+            this.aboveHighWaterMark = false;
+            this.emit(EVENT_WRITE_BUFFER_LOW, this.writeBuffer.bytes());
+        }
+
         if (0 == this.writeBuffer.size()) {
             this.emit(EVENT_DRAIN);
         } else {
             this.flush();
         }
+        this.updateDirectTransport();
     }
 
     private void flush() {
-        if (this.readyState != ReadyState.CLOSED && this.transport.writable &&
-                !this.upgrading && this.writeBuffer.size() != 0) {
+        this.flush(false);
+    }
+
+    /**
+     * @param linger whether the flush may be held back to gather more packets, see {@link #linger()}.
+     */
+    private void flush(boolean linger) {
+        int controlLen = this.controlBuffer.size();
+        if (this.readyState != ReadyState.CLOSED && this.transport.writable && !this.drainPending &&
+                !this.pausedForUpgrade && !this.racing && (this.writeBuffer.size() != 0 || controlLen != 0)) {
+            if (linger && controlLen == 0 && this.linger()) {
+                return;
+            }
+            if (this.lingerTimer != null) {
+                this.lingerTimer.cancel();
+                this.lingerTimer = null;
+            }
             if (logger.isLoggable(Level.FINE)) {
-                logger.fine(String.format("flushing %d packets in socket", this.writeBuffer.size()));
+                logger.fine(String.format("flushing %d packets in socket", controlLen + this.writeBuffer.size()));
             }
             this.prevBufferLen = this.writeBuffer.size();
-            this.transport.send(this.writeBuffer.toArray(new Packet[this.writeBuffer.size()]));
+            if (controlLen == 0) {
+                this.flushedPackets = this.writeBuffer.toArray(this.sparePackets);
+                this.sparePackets = null;
+            } else {
+                // control packets go first, and are done with as soon as they are handed to the transport
+                Packet[] data = this.writeBuffer.toArray(this.sparePackets);
+                this.sparePackets = null;
+                this.flushedPackets = new Packet[controlLen + data.length];
+                System.arraycopy(data, 0, this.flushedPackets, controlLen, data.length);
+                long now = System.nanoTime();
+                for (int i = 0; i < controlLen; i++) {
+                    Packet packet = this.controlBuffer.poll();
+                    this.flushedPackets[i] = packet;
+                    this.emit(EVENT_CONTROL_PACKET_FLUSH, packet, now - this.controlEnqueueTimes.poll());
+                }
+            }
+            this.flushing = true;
+            try {
+                this.transport.send(this.flushedPackets);
+            } finally {
+                this.flushing = false;
+            }
             this.emit(EVENT_FLUSH);
+            if (this.drainPending) {
+                this.drainPending = false;
+                this.onDrain();
+            }
+        }
+    }
+
+    /**
+     * Holds a polling flush back for up to `pollingLinger` ms, so that the messages sent in the meantime
+     * go out in the same request, unless `pollingBatchSize` is reached first.
+     *
+     * @return true if the flush must wait.
+     */
+    private boolean linger() {
+        if (this.pollingLinger <= 0 || !(this.transport instanceof Polling)) {
+            return false;
+        }
+        if (this.pollingBatchSize > 0 && this.writeBuffer.bytes() >= this.pollingBatchSize) {
+            return false;
+        }
+
+        if (this.lingerTimer == null) {
+            final Socket self = this;
+            final TimerWheel.Timeout[] timer = new TimerWheel.Timeout[1];
+            timer[0] = TimerWheel.shared().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    self.eventLoop.exec(new Runnable() {
+                        @Override
+                        public void run() {
+                            // cancelled by a flush after the task was queued
+                            if (self.lingerTimer != timer[0]) return;
+
+                            self.lingerTimer = null;
+                            self.flush();
+                        }
+                    });
+                }
+            }, this.pollingLinger, TimeUnit.MILLISECONDS);
+            this.lingerTimer = timer[0];
         }
+        return true;
     }
 
     public void write(String msg) {
@@ -642,6 +957,22 @@ public class Socket extends Emitter {
         this.send(msg, fn);
     }
 
+    public void write(ByteBuffer msg) {
+        this.write(msg, null);
+    }
+
+    public void write(ByteBuffer msg, Runnable fn) {
+        this.send(msg, fn);
+    }
+
+    public void write(EncodedPacket packet) {
+        this.write(packet, null);
+    }
+
+    public void write(EncodedPacket packet, Runnable fn) {
+        this.send(packet, fn);
+    }
+
     /**
      * Sends a message.
      *
@@ -655,51 +986,185 @@ public class Socket extends Emitter {
         this.send(msg, null);
     }
 
+    public void send(ByteBuffer msg) {
+        this.send(msg, null);
+    }
+
+    public void send(EncodedPacket packet) {
+        this.send(packet, null);
+    }
+
     /**
-     * Sends a message.
+     * Sends a message. If the write buffer is full, the message is dropped and an error is emitted
+     * (see {@link #trySend(String, Runnable)}).
      *
      * @param msg
      * @param fn callback to be called on drain
      */
-    public void send(final String msg, final Runnable fn) {
-        EventThread.exec(new Runnable() {
-            @Override
-            public void run() {
-                Socket.this.sendPacket(Packet.MESSAGE, msg, fn);
-            }
-        });
+    public void send(String msg, Runnable fn) {
+        this.sendMessage(new Packet<String>(PacketType.MESSAGE, msg), fn);
+    }
+
+    public void send(byte[] msg, Runnable fn) {
+        this.sendMessage(new Packet<byte[]>(PacketType.MESSAGE, msg), fn);
+    }
+
+    /**
+     * Sends the remaining bytes of the buffer as a binary message. Direct buffers are sent without
+     * being copied into a heap array first. The position of the buffer is not changed, and its content
+     * must not be modified until the message has been flushed.
+     *
+     * @param msg
+     * @param fn callback to be called on drain
+     */
+    public void send(ByteBuffer msg, Runnable fn) {
+        this.sendMessage(new Packet<ByteBuffer>(PacketType.MESSAGE, msg), fn);
+    }
+
+    /**
+     * Sends a packet that was encoded once with {@link Parser#encodePacket(Packet)}.
+     * The same packet can be sent to any number of sockets, which all write its precomputed encoded form.
+     *
+     * @param packet
+     * @param fn callback to be called on drain
+     */
+    public void send(EncodedPacket packet, Runnable fn) {
+        this.sendMessage(packet, fn);
+    }
+
+    public boolean trySend(String msg) {
+        return this.trySend(msg, null);
+    }
+
+    public boolean trySend(byte[] msg) {
+        return this.trySend(msg, null);
+    }
+
+    public boolean trySend(ByteBuffer msg) {
+        return this.trySend(msg, null);
+    }
+
+    public boolean trySend(EncodedPacket packet) {
+        return this.trySend(packet, null);
+    }
+
+    /**
+     * Sends a message if there is room for it in the write buffer. Never blocks.
+     *
+     * @param msg
+     * @param fn callback to be called on drain
+     * @return false if the message was rejected because the write buffer is full.
+     */
+    public boolean trySend(String msg, Runnable fn) {
+        return this.trySendMessage(new Packet<String>(PacketType.MESSAGE, msg), fn);
+    }
+
+    public boolean trySend(byte[] msg, Runnable fn) {
+        return this.trySendMessage(new Packet<byte[]>(PacketType.MESSAGE, msg), fn);
+    }
+
+    public boolean trySend(ByteBuffer msg, Runnable fn) {
+        return this.trySendMessage(new Packet<ByteBuffer>(PacketType.MESSAGE, msg), fn);
+    }
+
+    public boolean trySend(EncodedPacket packet, Runnable fn) {
+        return this.trySendMessage(packet, fn);
+    }
+
+    private void sendMessage(Packet packet, Runnable fn) {
+        if (!this.trySendMessage(packet, fn)) {
+            this.eventLoop.exec(new Runnable() {
+                @Override
+                public void run() {
+                    logger.fine("write buffer full, dropping message");
+                    Socket.this.emitInbound(EVENT_ERROR, new EngineIOException("write buffer full"));
+                }
+            });
+        }
     }
 
-    public void send(final byte[] msg, final Runnable fn) {
-        EventThread.exec(new Runnable() {
+    private boolean trySendMessage(final Packet packet, final Runnable fn) {
+        if (fn == null && this.tryWriteDirect(packet)) {
+            return true;
+        }
+
+        final int size = WriteBuffer.sizeOf(packet);
+        if (!this.writeBuffer.tryReserve(size)) {
+            return false;
+        }
+
+        this.handedOverPackets.incrementAndGet();
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
-                Socket.this.sendPacket(Packet.MESSAGE, msg, fn);
+                try {
+                    Socket.this.sendPacket(packet, size, fn);
+                } finally {
+                    Socket.this.handedOverPackets.decrementAndGet();
+                }
             }
         });
+        return true;
     }
 
-    private void sendPacket(String type, Runnable fn) {
-        this.sendPacket(new Packet(type), fn);
+    /**
+     * Writes a message from the calling thread when the socket is open over WebSocket and no message
+     * is waiting, so that it does not go through the event loop. `flush` and `drain` are not emitted.
+     *
+     * @return false if the message must go through the write buffer.
+     */
+    private boolean tryWriteDirect(Packet packet) {
+        // checked before the transport, which is unset before the counter goes down
+        if (this.handedOverPackets.get() != 0) {
+            return false;
+        }
+        WebSocket transport = this.directTransport;
+        if (transport == null || this.hasListeners(EVENT_PACKET_CREATE)) {
+            return false;
+        }
+        return transport.tryWrite(packet);
     }
 
-    private void sendPacket(String type, String data, Runnable fn) {
-        Packet<String> packet = new Packet<String>(type, data);
-        sendPacket(packet, fn);
+    /**
+     * Allows messages to be written from the calling thread if nothing waits to be written.
+     */
+    private void updateDirectTransport() {
+        boolean direct = this.readyState == ReadyState.OPEN && this.transport instanceof WebSocket
+                && this.transport.writable && !this.upgrading && !this.flushing && !this.drainPending
+                && this.writeBuffer.size() == 0 && this.controlBuffer.isEmpty();
+        this.directTransport = direct ? (WebSocket) this.transport : null;
     }
 
-    private void sendPacket(String type, byte[] data, Runnable fn) {
-        Packet<byte[]> packet = new Packet<byte[]>(type, data);
-        sendPacket(packet, fn);
+    /**
+     * Queues a control packet in its own lane, which is flushed ahead of the messages and is not subject to
+     * the write buffer limits or to `pollingLinger`.
+     */
+    private void sendControlPacket(PacketType type) {
+        if (ReadyState.CLOSING == this.readyState || ReadyState.CLOSED == this.readyState) {
+            return;
+        }
+
+        Packet packet = new Packet(type);
+        this.emit(EVENT_PACKET_CREATE, packet);
+        this.controlBuffer.offer(packet);
+        this.controlEnqueueTimes.offer(System.nanoTime());
+        this.flush();
     }
 
-    private void sendPacket(Packet packet, final Runnable fn) {
+    private void sendPacket(Packet packet, int size, final Runnable fn) {
         if (ReadyState.CLOSING == this.readyState || ReadyState.CLOSED == this.readyState) {
+            this.writeBuffer.release(size);
             return;
         }
 
         this.emit(EVENT_PACKET_CREATE, packet);
-        this.writeBuffer.offer(packet);
+        this.writeBuffer.offer(packet, size);
+        this.directTransport = null;
+        if (this.writeBufferHighWaterMark > 0 && !this.aboveHighWaterMark
+                && this.writeBuffer.bytes() >= this.writeBufferHighWaterMark) {
+            this.aboveHighWaterMark = true;
+            this.emit(EVENT_WRITE_BUFFER_HIGH, this.writeBuffer.bytes());
+        }
         if (null != fn) {
             this.once(EVENT_FLUSH, new Listener() {
                 @Override
@@ -708,7 +1173,7 @@ public class Socket extends Emitter {
                 }
             });
         }
-        this.flush();
+        this.flush(true);
     }
 
     /**
@@ -717,11 +1182,12 @@ public class Socket extends Emitter {
      * @return a reference to to this object.
      */
     public Socket close() {
-        EventThread.exec(new Runnable() {
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
                 if (Socket.this.readyState == ReadyState.OPENING || Socket.this.readyState == ReadyState.OPEN) {
                     Socket.this.readyState = ReadyState.CLOSING;
+                    Socket.this.directTransport = null;
 
                     final Socket self = Socket.this;
 
@@ -775,12 +1241,52 @@ public class Socket extends Emitter {
         return this;
     }
 
+    /**
+     * Emits an event about what the server sent, or the end of the connection, on the listener
+     * thread of the socket if any.
+     */
+    private void emitInbound(final String event, final Object... args) {
+        if (this.callbackDispatcher == null) {
+            this.emit(event, args);
+            return;
+        }
+        this.callbackDispatcher.execute(new Runnable() {
+            @Override
+            public void run() {
+                Socket.this.emit(event, args);
+            }
+        });
+    }
+
+    private void emitMessage(final Packet packet) {
+        if (this.callbackDispatcher == null) {
+            this.emit(EVENT_PACKET, packet);
+            this.emit(EVENT_DATA, packet.data);
+            this.emit(EVENT_MESSAGE, packet.data);
+            return;
+        }
+
+        boolean queued = this.callbackDispatcher.executeMessage(new Runnable() {
+            @Override
+            public void run() {
+                Socket.this.emit(EVENT_PACKET, packet);
+                Socket.this.emit(EVENT_DATA, packet.data);
+                Socket.this.emit(EVENT_MESSAGE, packet.data);
+            }
+        });
+        if (!queued) {
+            EngineIOException err = new EngineIOException("callback queue full");
+            this.emitInbound(EVENT_ERROR, err);
+            this.onClose("callback queue full", err);
+        }
+    }
+
     private void onError(Exception err) {
         if (logger.isLoggable(Level.FINE)) {
             logger.fine(String.format("socket error %s", err));
         }
         Socket.priorWebsocketSuccess = false;
-        this.emit(EVENT_ERROR, err);
+        this.emitInbound(EVENT_ERROR, err);
         this.onClose("transport error", err);
     }
 
@@ -797,10 +1303,12 @@ public class Socket extends Emitter {
 
             // clear timers
             if (this.pingTimeoutTimer != null) {
-                this.pingTimeoutTimer.cancel(false);
+                this.pingTimeoutTimer.cancel();
+                this.pingTimeoutTimer = null;
             }
-            if (this.heartbeatScheduler != null) {
-                this.heartbeatScheduler.shutdown();
+            if (this.lingerTimer != null) {
+                this.lingerTimer.cancel();
+                this.lingerTimer = null;
             }
 
             // stop event from firing again for transport
@@ -812,19 +1320,38 @@ public class Socket extends Emitter {
             // ignore further transport communication
             this.transport.off();
 
+            if (this.upgradedPolling != null) {
+                this.upgradedPolling.off();
+                this.upgradedPolling.cancelRequests();
+                this.upgradedPolling = null;
+            }
+
             // set ready state
             this.readyState = ReadyState.CLOSED;
+            if (this.registeredWithDispatcher) {
+                this.registeredWithDispatcher = false;
+                PollingDispatcher.unregister();
+            }
+            this.directTransport = null;
 
             // clear session id
             this.id = null;
 
             // emit close events
-            this.emit(EVENT_CLOSE, reason, desc);
+            this.emit(EVENT_PROBE_CLOSE);
+            this.emitInbound(EVENT_CLOSE, reason, desc);
 
             // clear buffers after, so users can still
             // grab the buffers on `close` event
             self.writeBuffer.clear();
+            self.controlBuffer.clear();
+            self.controlEnqueueTimes.clear();
             self.prevBufferLen = 0;
+            self.flushedPackets = null;
+            self.aboveHighWaterMark = false;
+            self.drainPending = false;
+            self.pausedForUpgrade = false;
+            self.racing = false;
         }
     }
 
@@ -844,22 +1371,201 @@ public class Socket extends Emitter {
         return this.id;
     }
 
-    private ScheduledExecutorService getHeartbeatScheduler() {
-        if (this.heartbeatScheduler == null || this.heartbeatScheduler.isShutdown()) {
-            this.heartbeatScheduler = createHeartbeatScheduler();
-        }
-        return this.heartbeatScheduler;
+    /**
+     * @return the loop running the events of this socket.
+     */
+    public EventLoop eventLoop() {
+        return this.eventLoop;
     }
 
-    private ScheduledExecutorService createHeartbeatScheduler() {
-        return Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+    /**
+     * Opens a WebSocket and, after a head start or as soon as the WebSocket fails, a polling transport.
+     * The first one to receive the handshake becomes the transport of the socket. The other one is closed,
+     * with its own session id, so that the server does not keep its session until the ping timeout.
+     */
+    private class TransportRace {
+
+        private final Transport webSocket;
+        private Transport polling;
+        private TimerWheel.Timeout headStart;
+        private boolean webSocketFailed;
+        private boolean pollingFailed;
+        private boolean done;
+
+        private final Listener onclose = new Listener() {
             @Override
-            public Thread newThread(Runnable r) {
-                Thread thread = new Thread(r, "engine.io-client.heartbeat-" + HEARTBEAT_THREAD_COUNTER.getAndIncrement());
-                thread.setDaemon(true);
-                return thread;
+            public void call(Object... args) {
+                TransportRace.this.abort();
             }
-        });
+        };
+
+        TransportRace() {
+            this.webSocket = Socket.this.createTransport(WebSocket.NAME);
+        }
+
+        void start() {
+            final Socket self = Socket.this;
+            logger.fine("racing transports");
+
+            // reached by close() until the race is over
+            self.transport = this.webSocket;
+            self.racing = true;
+            self.on(EVENT_PROBE_CLOSE, this.onclose);
+
+            this.headStart = TimerWheel.shared().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    self.eventLoop.exec(new Runnable() {
+                        @Override
+                        public void run() {
+                            TransportRace.this.startPolling();
+                        }
+                    });
+                }
+            }, self.raceHeadStart, TimeUnit.MILLISECONDS);
+
+            this.listen(this.webSocket);
+            this.webSocket.open();
+        }
+
+        private void startPolling() {
+            if (this.done || this.polling != null) return;
+
+            logger.fine("starting polling");
+            this.headStart.cancel();
+            this.polling = Socket.this.createTransport(Polling.NAME);
+            this.listen(this.polling);
+            this.polling.open();
+        }
+
+        private void listen(final Transport transport) {
+            transport.on(Transport.EVENT_PACKET, new Listener() {
+                @Override
+                public void call(Object... args) {
+                    Packet packet = (Packet) args[0];
+                    if (packet.packetType() == PacketType.OPEN) {
+                        TransportRace.this.win(transport, packet);
+                    }
+                }
+            }).on(Transport.EVENT_ERROR, new Listener() {
+                @Override
+                public void call(Object... args) {
+                    TransportRace.this.fail(transport, args.length > 0 ? (Exception) args[0] : null);
+                }
+            }).on(Transport.EVENT_CLOSE, new Listener() {
+                @Override
+                public void call(Object... args) {
+                    TransportRace.this.fail(transport, new EngineIOException("transport closed"));
+                }
+            });
+        }
+
+        private void win(Transport winner, Packet handshake) {
+            if (this.done) return;
+
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(String.format("transport '%s' won the race", winner.name));
+            }
+            this.stop();
+            this.release(winner == this.webSocket ? this.polling : this.webSocket);
+            winner.off();
+
+            Socket.this.setTransport(winner);
+            Socket.this.onPacket(handshake);
+        }
+
+        private void fail(Transport transport, Exception err) {
+            if (this.done) return;
+
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(String.format("transport '%s' failed the race: %s", transport.name, err));
+            }
+            transport.off();
+            if (transport == this.webSocket) {
+                this.webSocketFailed = true;
+            } else {
+                this.pollingFailed = true;
+            }
+
+            if (!this.webSocketFailed) return;
+
+            // fall back to polling right away
+            this.startPolling();
+            if (!this.pollingFailed) {
+                Socket.this.transport = this.polling;
+                return;
+            }
+
+            this.stop();
+            Socket.this.setTransport(transport);
+            Socket.this.onError(err);
+        }
+
+        private void abort() {
+            if (this.done) return;
+
+            this.stop();
+            this.release(this.webSocket);
+            this.release(this.polling);
+        }
+
+        private void stop() {
+            this.done = true;
+            this.headStart.cancel();
+            Socket.this.racing = false;
+            Socket.this.off(EVENT_PROBE_CLOSE, this.onclose);
+        }
+
+        /**
+         * Closes a transport that lost the race, right away for a WebSocket, or else once its handshake
+         * is received.
+         */
+        private void release(final Transport transport) {
+            if (transport == null) return;
+
+            transport.off();
+            if (transport instanceof Polling && transport.readyState == Transport.ReadyState.OPENING) {
+                // the close packet is only accepted with the session id of the handshake, while the session
+                // of a WebSocket ends with the connection
+                transport.on(Transport.EVENT_PACKET, new Listener() {
+                    @Override
+                    public void call(Object... args) {
+                        Packet packet = (Packet) args[0];
+                        if (packet.packetType() != PacketType.OPEN) return;
+
+                        transport.off(Transport.EVENT_PACKET, this);
+                        try {
+                            transport.query.put("sid", new HandshakeData((String) packet.data).sid);
+                        } catch (JSONException e) {
+                            logger.log(Level.FINE, "invalid handshake of the losing transport", e);
+                        }
+                        transport.close();
+                    }
+                });
+            } else {
+                transport.close();
+            }
+        }
+    }
+
+    /**
+     * What to do with a received message when too many are waiting for the callback executor.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the message.
+         */
+        DROP_NEWEST,
+
+        /**
+         * Drop the oldest message that is still waiting.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Close the socket with an error.
+         */
+        CLOSE
     }
 
     public static class Options extends Transport.Options {
@@ -875,10 +1581,98 @@ public class Socket extends Emitter {
         public boolean upgrade = true;
 
         public boolean rememberUpgrade;
+
+        /**
+         * Whether to switch to the upgraded transport without waiting for the pending long-poll to return.
+         * The server then ends the poll, and the packets it still carried are emitted before those received
+         * over the new transport. Defaults to `false`.
+         */
+        public boolean fastUpgrade;
+
+        /**
+         * Whether to open a WebSocket and a polling transport concurrently, when both are in {@link #transports},
+         * and keep the one that completes the handshake first. Polling is started after {@link #raceHeadStart},
+         * or as soon as the WebSocket fails. Defaults to `false`.
+         */
+        public boolean raceTransports;
+
+        /**
+         * How long (in ms) the WebSocket is given before polling is started when racing. Defaults to `250`.
+         */
+        public long raceHeadStart = 250;
+
         public String host;
         public String query;
         public Map<String, Transport.Options> transportOptions;
 
+        /**
+         * The maximum number of messages waiting in the write buffer, beyond which
+         * messages are rejected. Defaults to `0` (no limit).
+         */
+        public int writeBufferMaxPackets;
+
+        /**
+         * The maximum amount of data (bytes of binary messages, characters of text messages) waiting in the
+         * write buffer, beyond which messages are rejected. Defaults to `0` (no limit).
+         */
+        public long writeBufferMaxBytes;
+
+        /**
+         * The amount of data in the write buffer at which `writeBufferHigh` is emitted. Defaults to `0` (never).
+         */
+        public long writeBufferHighWaterMark;
+
+        /**
+         * The amount of data in the write buffer at which `writeBufferLow` is emitted, after `writeBufferHigh`.
+         * Defaults to `0` (once the buffer is empty).
+         */
+        public long writeBufferLowWaterMark;
+
+        /**
+         * How long (in ms) the polling transport waits for more messages before sending a message, so that bursts
+         * of messages are sent in a single request. Defaults to `0` (messages are sent as soon as possible).
+         */
+        public long pollingLinger;
+
+        /**
+         * The amount of buffered data (see {@link #writeBufferMaxBytes}) at which the polling transport stops
+         * waiting for more messages and sends them right away. Defaults to `0` (wait for `pollingLinger`).
+         */
+        public long pollingBatchSize;
+
+        /**
+         * The group the loop of the socket is taken from, when {@link #eventLoop} is not set, to spread
+         * sockets over several threads.
+         */
+        public EventLoopGroup eventLoopGroup;
+
+        /**
+         * The executor on which the listeners of `open`, `handshake`, `packet`, `ping`, `data`, `message`,
+         * `error` and `close` are called, instead of the event loop, so that the protocol does not wait for
+         * the application. The events of a socket are handed over one at a time and in order, so the executor
+         * may be shared and run tasks concurrently. Defaults to `null` (listeners are called on the event loop).
+         */
+        public Executor callbackExecutor;
+
+        /**
+         * The maximum number of messages waiting for {@link #callbackExecutor}, beyond which
+         * {@link #callbackOverflowPolicy} applies. Other events are always queued. Defaults to `0` (no limit).
+         */
+        public int callbackQueueSize;
+
+        /**
+         * What to do with a message received while {@link #callbackQueueSize} messages are waiting for
+         * {@link #callbackExecutor}. Defaults to {@link OverflowPolicy#CLOSE}.
+         */
+        public OverflowPolicy callbackOverflowPolicy = OverflowPolicy.CLOSE;
+
+        /**
+         * Whether to use virtual threads as {@link #callbackExecutor} when it is not set, so that listeners
+         * can block without holding up other sockets. Virtual threads require JDK 21; a shared pool of
+         * platform threads is used on older JDKs. Defaults to `false`.
+         */
+        public boolean virtualThreadListeners;
+
         private static Options fromURI(URI uri, Options opts) {
             if (opts == null) {
                 opts = new Options();
@@ -1,13 +1,18 @@
 package io.socket.engineio.client;
 
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.socket.emitter.Emitter;
 import io.socket.engineio.parser.Packet;
 import io.socket.engineio.parser.Parser;
-import io.socket.thread.EventThread;
+import io.socket.thread.EventLoop;
 import okhttp3.Call;
 import okhttp3.WebSocket;
 
@@ -25,6 +30,13 @@ public abstract class Transport extends Emitter {
     public static final String EVENT_OPEN = "open";
     public static final String EVENT_CLOSE = "close";
     public static final String EVENT_PACKET = "packet";
+
+    /**
+     * Called after the packets received together (the frames waiting for the event loop, or a polling
+     * response) have been emitted one by one, with all of them as a Packet[]. Only emitted when
+     * {@link #batchPackets()} is true.
+     */
+    public static final String EVENT_PACKETS = "packets";
     public static final String EVENT_DRAIN = "drain";
     public static final String EVENT_ERROR = "error";
     public static final String EVENT_REQUEST_HEADERS = "requestHeaders";
@@ -36,6 +48,8 @@ public abstract class Transport extends Emitter {
 
     protected boolean secure;
     protected boolean timestampRequests;
+    protected boolean binaryAsByteBuffer;
+    protected boolean textAsCharSequence;
     protected int port;
     protected String path;
     protected String hostname;
@@ -45,6 +59,21 @@ public abstract class Transport extends Emitter {
     protected WebSocket.Factory webSocketFactory;
     protected Call.Factory callFactory;
     protected Map<String, List<String>> extraHeaders;
+    protected EventLoop eventLoop;
+
+    // the maximum number of received packets delivered by a single task, so that other sockets get their turn
+    private static final int MAX_INBOUND_BATCH = 256;
+
+    private final Queue<Packet> inbound = new ConcurrentLinkedQueue<Packet>();
+    private final AtomicBoolean inboundScheduled = new AtomicBoolean();
+    // only accessed from the event loop
+    private boolean inboundHeld;
+    private final Runnable inboundTask = new Runnable() {
+        @Override
+        public void run() {
+            Transport.this.runInboundTask();
+        }
+    };
 
     public Transport(Options opts) {
         this.path = opts.path;
@@ -54,10 +83,13 @@ public abstract class Transport extends Emitter {
         this.query = opts.query;
         this.timestampParam = opts.timestampParam;
         this.timestampRequests = opts.timestampRequests;
+        this.binaryAsByteBuffer = opts.binaryAsByteBuffer;
+        this.textAsCharSequence = opts.textAsCharSequence;
         this.socket = opts.socket;
         this.webSocketFactory = opts.webSocketFactory;
         this.callFactory = opts.callFactory;
         this.extraHeaders = opts.extraHeaders;
+        this.eventLoop = opts.eventLoop != null ? opts.eventLoop : EventLoop.defaultLoop();
     }
 
     protected Transport onError(String msg, Exception desc) {
@@ -68,7 +100,7 @@ public abstract class Transport extends Emitter {
     }
 
     public Transport open() {
-        EventThread.exec(new Runnable() {
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
                 if (Transport.this.readyState == ReadyState.CLOSED || Transport.this.readyState == null) {
@@ -81,7 +113,7 @@ public abstract class Transport extends Emitter {
     }
 
     public Transport close() {
-        EventThread.exec(new Runnable() {
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
                 if (Transport.this.readyState == ReadyState.OPENING || Transport.this.readyState == ReadyState.OPEN) {
@@ -94,7 +126,7 @@ public abstract class Transport extends Emitter {
     }
 
     public void send(final Packet[] packets) {
-        EventThread.exec(new Runnable() {
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
                 if (Transport.this.readyState == ReadyState.OPEN) {
@@ -113,17 +145,129 @@ public abstract class Transport extends Emitter {
     }
 
     protected void onData(String data) {
-        this.onPacket(Parser.decodePacket(data));
+        this.onPacket(this.decodePacket(data));
     }
 
     protected void onData(byte[] data) {
-        this.onPacket(Parser.decodePacket(data));
+        this.onPacket(this.decodePacket(data));
+    }
+
+    protected void onData(ByteBuffer data) {
+        this.onPacket(this.decodePacket(data));
+    }
+
+    /**
+     * Decodes a received frame. Only reads the options of the transport, so that it can be called
+     * on the thread receiving the frame before handing the packet over to the event loop.
+     */
+    protected Packet decodePacket(String data) {
+        return this.textAsCharSequence ? Parser.decodePacketView(data) : Parser.decodePacket(data);
+    }
+
+    protected Packet decodePacket(byte[] data) {
+        return Parser.decodePacket(data);
+    }
+
+    protected Packet decodePacket(ByteBuffer data) {
+        return Parser.decodePacket(data);
     }
 
     protected void onPacket(Packet packet) {
         this.emit(EVENT_PACKET, packet);
     }
 
+    protected void onPackets(Packet[] packets) {
+        this.emit(EVENT_PACKETS, (Object) packets);
+    }
+
+    /**
+     * Whether the received packets are collected for {@link #EVENT_PACKETS}: when the socket has
+     * {@link Socket#EVENT_MESSAGE_BATCH} listeners, or without a socket, when the transport has listeners.
+     */
+    protected boolean batchPackets() {
+        return this.socket != null
+                ? this.socket.hasListeners(Socket.EVENT_MESSAGE_BATCH)
+                : this.hasListeners(EVENT_PACKETS);
+    }
+
+    /**
+     * Hands a received packet over to the event loop. Thread-safe. Packets received while a delivery is
+     * scheduled are delivered by the same task, in order.
+     */
+    protected void receive(Packet packet) {
+        this.inbound.offer(packet);
+        if (this.inboundScheduled.compareAndSet(false, true)) {
+            this.eventLoop.nextTick(this.inboundTask);
+        }
+    }
+
+    /**
+     * Delivers all the packets received so far, e.g. before handling the end of the connection.
+     * Must be called on the event loop.
+     */
+    protected void drainInbound() {
+        int delivered;
+        do {
+            delivered = this.deliverInbound(MAX_INBOUND_BATCH);
+        } while (delivered == MAX_INBOUND_BATCH);
+    }
+
+    /**
+     * Keeps the received packets queued until {@link #releaseInbound()} is called. Must be called on the
+     * event loop.
+     */
+    void holdInbound() {
+        this.inboundHeld = true;
+    }
+
+    /**
+     * Delivers the packets received while held. Must be called on the event loop.
+     */
+    void releaseInbound() {
+        this.inboundHeld = false;
+        if (!this.inbound.isEmpty() && this.inboundScheduled.compareAndSet(false, true)) {
+            this.eventLoop.nextTick(this.inboundTask);
+        }
+    }
+
+    private void runInboundTask() {
+        if (this.inboundHeld) {
+            // rescheduled by releaseInbound()
+            this.inboundScheduled.set(false);
+            return;
+        }
+        if (this.deliverInbound(MAX_INBOUND_BATCH) == MAX_INBOUND_BATCH) {
+            // there may be more, let other tasks run first
+            this.eventLoop.nextTick(this.inboundTask);
+            return;
+        }
+        this.inboundScheduled.set(false);
+        if (!this.inbound.isEmpty() && this.inboundScheduled.compareAndSet(false, true)) {
+            this.eventLoop.nextTick(this.inboundTask);
+        }
+    }
+
+    private int deliverInbound(int max) {
+        boolean batching = this.batchPackets();
+        List<Packet> batch = null;
+        int count = 0;
+        Packet packet;
+        while (count < max && (packet = this.inbound.poll()) != null) {
+            count++;
+            if (batching) {
+                if (batch == null) {
+                    batch = new ArrayList<Packet>();
+                }
+                batch.add(packet);
+            }
+            this.onPacket(packet);
+        }
+        if (batch != null) {
+            this.onPackets(batch.toArray(new Packet[batch.size()]));
+        }
+        return count;
+    }
+
     protected void onClose() {
         this.readyState = ReadyState.CLOSED;
         this.emit(EVENT_CLOSE);
@@ -143,6 +287,18 @@ public abstract class Transport extends Emitter {
         public String timestampParam;
         public boolean secure;
         public boolean timestampRequests;
+
+        /**
+         * Whether to deliver received binary data as read-only {@link ByteBuffer} views instead of
+         * copying it into byte arrays. Defaults to `false`.
+         */
+        public boolean binaryAsByteBuffer;
+
+        /**
+         * Whether to deliver received text messages as {@link io.socket.engineio.parser.StringSlice} views
+         * over the received frame instead of copying them into strings. Defaults to `false`.
+         */
+        public boolean textAsCharSequence;
         public int port = -1;
         public int policyPort = -1;
         public Map<String, String> query;
@@ -150,5 +306,18 @@ public abstract class Transport extends Emitter {
         public WebSocket.Factory webSocketFactory;
         public Call.Factory callFactory;
         public Map<String, List<String>> extraHeaders;
+
+        /**
+         * The loop running the events of the socket and its transports. Defaults to the loop of
+         * {@link io.socket.thread.EventThread}.
+         */
+        public EventLoop eventLoop;
+
+        /**
+         * The amount of data waiting to be sent by the WebSocket transport under which it accepts more,
+         * in bytes. Above it, messages stay in the write buffer of the socket until the data has been sent.
+         * Defaults to `0` ({@link io.socket.engineio.client.transports.WebSocket#DEFAULT_DRAIN_THRESHOLD}).
+         */
+        public long webSocketDrainThreshold;
     }
 }
@@ -0,0 +1,178 @@
+package io.socket.engineio.client;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.socket.engineio.parser.EncodedPacket;
+import io.socket.engineio.parser.Packet;
+
+/**
+ * The outbound queue of a socket: a growable ring of packets, along with the amount of data they hold.
+ *
+ * The queue itself is only accessed from the event thread. Capacity is reserved with {@link #tryReserve(int)}
+ * before a message is handed over to the event thread, so that the limits can be checked (and a message
+ * rejected) from any thread. Packets offered with a negative size are not counted.
+ */
+/*package*/ class WriteBuffer {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxPackets;
+    private final long maxBytes;
+
+    private final AtomicInteger reservedPackets = new AtomicInteger();
+    private final AtomicLong reservedBytes = new AtomicLong();
+
+    private Packet[] packets = new Packet[INITIAL_CAPACITY];
+    private int[] sizes = new int[INITIAL_CAPACITY];
+    private int head;
+    private int count;
+
+    /**
+     * @param maxPackets the maximum number of counted packets, or 0 for no limit.
+     * @param maxBytes the maximum amount of data of the counted packets, or 0 for no limit.
+     */
+    WriteBuffer(int maxPackets, long maxBytes) {
+        this.maxPackets = maxPackets;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the amount of data a packet is accounted for: the length of binary data, and the length
+     * in characters of text data.
+     */
+    static int sizeOf(Packet packet) {
+        if (packet instanceof EncodedPacket) {
+            EncodedPacket encoded = (EncodedPacket) packet;
+            return encoded.isBinary() ? encoded.binaryFrame().size() : encoded.textFrame().length() - 1;
+        } else if (packet.data instanceof byte[]) {
+            return ((byte[]) packet.data).length;
+        } else if (packet.data instanceof ByteBuffer) {
+            return ((ByteBuffer) packet.data).remaining();
+        } else if (packet.data instanceof CharSequence) {
+            return ((CharSequence) packet.data).length();
+        }
+        return 0;
+    }
+
+    /**
+     * Reserves room for a packet. Thread-safe.
+     *
+     * @param size the size of the packet.
+     * @return false if the buffer is full, in which case nothing was reserved.
+     */
+    boolean tryReserve(int size) {
+        if (this.maxPackets > 0) {
+            int current;
+            do {
+                current = this.reservedPackets.get();
+                if (current >= this.maxPackets) {
+                    return false;
+                }
+            } while (!this.reservedPackets.compareAndSet(current, current + 1));
+        } else {
+            this.reservedPackets.incrementAndGet();
+        }
+
+        if (this.maxBytes > 0) {
+            long current;
+            do {
+                current = this.reservedBytes.get();
+                if (current + size > this.maxBytes) {
+                    this.reservedPackets.decrementAndGet();
+                    return false;
+                }
+            } while (!this.reservedBytes.compareAndSet(current, current + size));
+        } else {
+            this.reservedBytes.addAndGet(size);
+        }
+        return true;
+    }
+
+    /**
+     * Releases the room reserved for a packet that will not be offered. Thread-safe.
+     */
+    void release(int size) {
+        if (size >= 0) {
+            this.reservedPackets.decrementAndGet();
+            this.reservedBytes.addAndGet(-size);
+        }
+    }
+
+    /**
+     * @return the amount of data reserved by counted packets, including those not offered yet. Thread-safe.
+     */
+    long bytes() {
+        return this.reservedBytes.get();
+    }
+
+    /**
+     * Appends a packet.
+     *
+     * @param packet the packet.
+     * @param size the size it was reserved with, or -1 if it is not counted.
+     */
+    void offer(Packet packet, int size) {
+        if (this.count == this.packets.length) {
+            this.grow();
+        }
+        int index = (this.head + this.count) & (this.packets.length - 1);
+        this.packets[index] = packet;
+        this.sizes[index] = size;
+        this.count++;
+    }
+
+    /**
+     * @return the number of queued packets.
+     */
+    int size() {
+        return this.count;
+    }
+
+    /**
+     * Copies the queued packets, oldest first, into the given array if it has the right length, or else
+     * into a new array.
+     */
+    Packet[] toArray(Packet[] reuse) {
+        Packet[] result = reuse != null && reuse.length == this.count ? reuse : new Packet[this.count];
+        int first = Math.min(this.count, this.packets.length - this.head);
+        System.arraycopy(this.packets, this.head, result, 0, first);
+        System.arraycopy(this.packets, 0, result, first, this.count - first);
+        return result;
+    }
+
+    /**
+     * Removes the given number of packets from the head of the queue, releasing their room.
+     */
+    void remove(int n) {
+        n = Math.min(n, this.count);
+        int mask = this.packets.length - 1;
+        for (int i = 0; i < n; i++) {
+            int index = (this.head + i) & mask;
+            this.release(this.sizes[index]);
+            this.packets[index] = null;
+        }
+        this.head = (this.head + n) & mask;
+        this.count -= n;
+    }
+
+    void clear() {
+        this.remove(this.count);
+        this.head = 0;
+    }
+
+    private void grow() {
+        int capacity = this.packets.length << 1;
+        Packet[] packets = new Packet[capacity];
+        int[] sizes = new int[capacity];
+        int first = this.packets.length - this.head;
+        System.arraycopy(this.packets, this.head, packets, 0, first);
+        System.arraycopy(this.packets, 0, packets, first, this.head);
+        System.arraycopy(this.sizes, this.head, sizes, 0, first);
+        System.arraycopy(this.sizes, 0, sizes, first, this.head);
+        this.packets = packets;
+        this.sizes = sizes;
+        this.head = 0;
+    }
+}
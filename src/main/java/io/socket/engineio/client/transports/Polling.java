@@ -4,12 +4,15 @@ package io.socket.engineio.client.transports;
 import io.socket.emitter.Emitter;
 import io.socket.engineio.client.Transport;
 import io.socket.engineio.parser.Packet;
+import io.socket.engineio.parser.PacketType;
 import io.socket.engineio.parser.Parser;
 import io.socket.parseqs.ParseQS;
-import io.socket.thread.EventThread;
 import io.socket.yeast.Yeast;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -24,6 +27,7 @@ abstract public class Polling extends Transport {
     public static final String EVENT_POLL_COMPLETE = "pollComplete";
 
     private boolean polling;
+    private List<Packet> pollPackets;
 
 
     public Polling(Options opts) {
@@ -36,7 +40,18 @@ abstract public class Polling extends Transport {
     }
 
     public void pause(final Runnable onPause) {
-        EventThread.exec(new Runnable() {
+        this.pause(onPause, true);
+    }
+
+    /**
+     * Stops polling and writing, then calls onPause.
+     *
+     * @param onPause called once paused.
+     * @param waitForPoll whether to wait for the poll in flight to complete. If not, its packets are still
+     *                    emitted once it completes.
+     */
+    public void pause(final Runnable onPause, final boolean waitForPoll) {
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
                 final Polling self = Polling.this;
@@ -52,10 +67,11 @@ abstract public class Polling extends Transport {
                     }
                 };
 
-                if (Polling.this.polling || !Polling.this.writable) {
+                final boolean waitingForPoll = waitForPoll && Polling.this.polling;
+                if (waitingForPoll || !Polling.this.writable) {
                     final int[] total = new int[]{0};
 
-                    if (Polling.this.polling) {
+                    if (waitingForPoll) {
                         logger.fine("we are currently polling - waiting to pause");
                         total[0]++;
                         Polling.this.once(EVENT_POLL_COMPLETE, new Emitter.Listener() {
@@ -89,6 +105,13 @@ abstract public class Polling extends Transport {
         });
     }
 
+    /**
+     * @return true if a poll is in flight.
+     */
+    public boolean isPolling() {
+        return this.polling;
+    }
+
     private void poll() {
         logger.fine("polling");
         this.polling = true;
@@ -111,26 +134,66 @@ abstract public class Polling extends Transport {
         if (logger.isLoggable(Level.FINE)) {
             logger.fine(String.format("polling got data %s", data));
         }
-        Parser.DecodePayloadCallback callback = new Parser.DecodePayloadCallback() {
+        Parser.DecodePayloadCallback<Object> callback = new Parser.DecodePayloadCallback<Object>() {
             @Override
-            public boolean call(Packet packet, int index, int total) {
-                if (self.readyState == ReadyState.OPENING && Packet.OPEN.equals(packet.type)) {
-                    self.onOpen();
-                }
-
-                if (Packet.CLOSE.equals(packet.type)) {
-                    self.onClose();
-                    return false;
-                }
-
-                self.onPacket(packet);
-                return true;
+            public boolean call(Packet<Object> packet, int index, int total) {
+                return self.onPollPacket(packet);
             }
         };
 
-        Parser.decodePayload((String) data, callback);
+        if (this.textAsCharSequence) {
+            Parser.decodePayloadViews((String) data, callback);
+        } else {
+            Parser.decodePayload((String) data, callback);
+        }
+
+        this.onPollComplete();
+    }
+
+    /**
+     * Handles a packet of the current poll response.
+     *
+     * @param packet a decoded packet.
+     * @return false if the rest of the response must be ignored.
+     */
+    protected boolean onPollPacket(Packet packet) {
+        if (this.readyState == ReadyState.CLOSED) {
+            return false;
+        }
+
+        PacketType type = packet.packetType();
+        if (this.readyState == ReadyState.OPENING && type == PacketType.OPEN) {
+            this.onOpen();
+        }
 
-        if (this.readyState != ReadyState.CLOSED) {
+        if (type == PacketType.CLOSE) {
+            this.flushPollPackets();
+            this.onClose();
+            return false;
+        }
+
+        if (this.binaryAsByteBuffer && packet.data instanceof byte[]) {
+            packet = new Packet<ByteBuffer>(type, ByteBuffer.wrap((byte[]) packet.data).asReadOnlyBuffer());
+        }
+
+        this.onPacket(packet);
+        if (this.batchPackets()) {
+            if (this.pollPackets == null) {
+                this.pollPackets = new ArrayList<Packet>();
+            }
+            this.pollPackets.add(packet);
+        }
+        return true;
+    }
+
+    /**
+     * Called once all the packets of the current poll response have been handled.
+     */
+    protected void onPollComplete() {
+        if (this.readyState == ReadyState.CLOSED) {
+            this.pollPackets = null;
+        } else {
+            this.flushPollPackets();
             this.polling = false;
             this.emit(EVENT_POLL_COMPLETE);
 
@@ -144,6 +207,14 @@ abstract public class Polling extends Transport {
         }
     }
 
+    private void flushPollPackets() {
+        List<Packet> packets = this.pollPackets;
+        this.pollPackets = null;
+        if (packets != null) {
+            this.onPackets(packets.toArray(new Packet[packets.size()]));
+        }
+    }
+
     protected void doClose() {
         final Polling self = this;
 
@@ -151,7 +222,9 @@ abstract public class Polling extends Transport {
             @Override
             public void call(Object... args) {
                 logger.fine("writing close packet");
-                self.write(new Packet[]{new Packet(Packet.CLOSE)});
+                // the server ends the pending poll once it gets the close packet
+                self.cancelWrite();
+                self.write(new Packet[]{new Packet(PacketType.CLOSE)});
             }
         };
 
@@ -177,10 +250,22 @@ abstract public class Polling extends Transport {
             }
         };
 
+        this.doWrite(packets, callbackfn);
+    }
+
+    /**
+     * Writes the packets as a single payload. Subclasses may override this to encode the payload
+     * straight into the request body.
+     *
+     * @param packets packets to write.
+     * @param fn callback to be called once the payload has been written.
+     */
+    protected void doWrite(Packet[] packets, final Runnable fn) {
+        final Polling self = this;
         Parser.encodePayload(packets, new Parser.EncodeCallback<String>() {
             @Override
             public void call(String data) {
-                self.doWrite(data, callbackfn);
+                self.doWrite(data, fn);
             }
         });
     }
@@ -214,5 +299,15 @@ abstract public class Polling extends Transport {
 
     abstract protected void doWrite(String data, Runnable fn);
 
+    /**
+     * Cancels the poll and write requests in flight, if any. Their responses are ignored.
+     */
+    public void cancelRequests() {}
+
+    /**
+     * Cancels the write request in flight, if any. Its response is ignored.
+     */
+    protected void cancelWrite() {}
+
     abstract protected void doPoll();
 }
@@ -11,8 +11,11 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import io.socket.emitter.Emitter;
+import io.socket.engineio.client.PollingDispatcher;
 import io.socket.engineio.client.Transport;
-import io.socket.thread.EventThread;
+import io.socket.engineio.parser.Packet;
+import io.socket.engineio.parser.PacketType;
+import io.socket.engineio.parser.Parser;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.HttpUrl;
@@ -20,6 +23,7 @@ import okhttp3.MediaType;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.BufferedSink;
 
 public class PollingXHR extends Polling {
 
@@ -27,6 +31,10 @@ public class PollingXHR extends Polling {
 
     private static boolean LOGGABLE_FINE = logger.isLoggable(Level.FINE);
 
+    // the requests in flight, only accessed from the event loop
+    private Request pollRequest;
+    private Request writeRequest;
+
     public PollingXHR(Transport.Options opts) {
         super(opts);
     }
@@ -42,6 +50,7 @@ public class PollingXHR extends Polling {
         opts.uri = this.uri();
         opts.callFactory = this.callFactory;
         opts.extraHeaders = this.extraHeaders;
+        opts.textAsCharSequence = this.textAsCharSequence;
 
         Request req = new Request(opts);
 
@@ -55,7 +64,7 @@ public class PollingXHR extends Polling {
         }).on(Request.EVENT_RESPONSE_HEADERS, new Emitter.Listener() {
             @Override
             public void call(final Object... args) {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
                         self.emit(Transport.EVENT_RESPONSE_HEADERS, args[0]);
@@ -71,15 +80,31 @@ public class PollingXHR extends Polling {
         Request.Options opts = new Request.Options();
         opts.method = "POST";
         opts.data = data;
+        this.doWrite(opts, fn);
+    }
+
+    @Override
+    protected void doWrite(Packet[] packets, final Runnable fn) {
+        Request.Options opts = new Request.Options();
+        opts.method = "POST";
+        opts.packets = packets;
+        this.doWrite(opts, fn);
+    }
+
+    private void doWrite(Request.Options opts, final Runnable fn) {
         opts.extraHeaders = this.extraHeaders;
-        Request req = this.request(opts);
+        final Request req = this.request(opts);
         final PollingXHR self = this;
         req.on(Request.EVENT_SUCCESS, new Emitter.Listener() {
             @Override
             public void call(Object... args) {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
+                        if (self.writeRequest == req) {
+                            self.writeRequest = null;
+                        }
+                        self.onWriteComplete();
                         fn.run();
                     }
                 });
@@ -88,31 +113,49 @@ public class PollingXHR extends Polling {
         req.on(Request.EVENT_ERROR, new Emitter.Listener() {
             @Override
             public void call(final Object... args) {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
+                        if (self.writeRequest == req) {
+                            self.writeRequest = null;
+                        }
+                        self.onWriteComplete();
                         Exception err = args.length > 0 && args[0] instanceof Exception ? (Exception)args[0] : null;
                         self.onError("xhr post error", err);
                     }
                 });
             }
         });
+        this.writeRequest = req;
         req.create();
     }
 
     @Override
     protected void doPoll() {
         logger.fine("xhr poll");
-        Request req = this.request();
+        final Request req = this.request();
         final PollingXHR self = this;
-        req.on(Request.EVENT_DATA, new Emitter.Listener() {
+        req.on(Request.EVENT_PACKET, new Emitter.Listener() {
             @Override
             public void call(final Object... args) {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
-                        Object arg = args.length > 0 ? args[0] : null;
-                        self.onData((String)arg);
+                        self.onPollPacket((Packet) args[0]);
+                    }
+                });
+            }
+        });
+        req.on(Request.EVENT_SUCCESS, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                self.eventLoop.exec(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (self.pollRequest == req) {
+                            self.pollRequest = null;
+                        }
+                        self.onPollComplete();
                     }
                 });
             }
@@ -120,22 +163,55 @@ public class PollingXHR extends Polling {
         req.on(Request.EVENT_ERROR, new Emitter.Listener() {
             @Override
             public void call(final Object... args) {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
+                        if (self.pollRequest == req) {
+                            self.pollRequest = null;
+                        }
                         Exception err = args.length > 0 && args[0] instanceof Exception ? (Exception) args[0] : null;
                         self.onError("xhr poll error", err);
                     }
                 });
             }
         });
+        this.pollRequest = req;
         req.create();
     }
 
+    private void onWriteComplete() {
+        if (this.readyState == ReadyState.CLOSED) {
+            // the close packet went through or never will: the pending poll has been answered or is of no use
+            this.cancelPoll();
+        }
+    }
+
+    @Override
+    public void cancelRequests() {
+        this.cancelPoll();
+        this.cancelWrite();
+    }
+
+    private void cancelPoll() {
+        if (this.pollRequest != null) {
+            this.pollRequest.cancel();
+            this.pollRequest = null;
+        }
+    }
+
+    @Override
+    protected void cancelWrite() {
+        if (this.writeRequest != null) {
+            this.writeRequest.cancel();
+            this.writeRequest = null;
+        }
+    }
+
     public static class Request extends Emitter {
 
         public static final String EVENT_SUCCESS = "success";
         public static final String EVENT_DATA = "data";
+        public static final String EVENT_PACKET = "packet";
         public static final String EVENT_ERROR = "error";
         public static final String EVENT_REQUEST_HEADERS = "requestHeaders";
         public static final String EVENT_RESPONSE_HEADERS = "responseHeaders";
@@ -148,18 +224,23 @@ public class PollingXHR extends Polling {
         private String uri;
 
         private String data;
+        private Packet[] packets;
 
         private Call.Factory callFactory;
         private Map<String, List<String>> extraHeaders;
+        private boolean textAsCharSequence;
         private Response response;
-        private Call requestCall;
+        private volatile Call requestCall;
+        private volatile boolean cancelled;
 
         public Request(Options opts) {
             this.method = opts.method != null ? opts.method : "GET";
             this.uri = opts.uri;
             this.data = opts.data;
+            this.packets = opts.packets;
             this.callFactory = opts.callFactory;
             this.extraHeaders = opts.extraHeaders;
+            this.textAsCharSequence = opts.textAsCharSequence;
         }
 
         public void create() {
@@ -178,17 +259,23 @@ public class PollingXHR extends Polling {
             this.onRequestHeaders(headers);
 
             if (LOGGABLE_FINE) {
-                logger.fine(String.format("sending xhr with url %s | data %s", this.uri, this.data));
+                if (this.packets != null) {
+                    logger.fine(String.format("sending xhr with url %s | %d packets", this.uri, this.packets.length));
+                } else {
+                    logger.fine(String.format("sending xhr with url %s | data %s", this.uri, this.data));
+                }
             }
 
-            okhttp3.Request.Builder requestBuilder = new okhttp3.Request.Builder();
+            okhttp3.Request.Builder requestBuilder = PollingDispatcher.tag(new okhttp3.Request.Builder());
             for (Map.Entry<String, List<String>> header : headers.entrySet()) {
                 for (String v : header.getValue()){
                     requestBuilder.addHeader(header.getKey(), v);
                 }
             }
             RequestBody body = null;
-            if (this.data != null) {
+            if (this.packets != null) {
+                body = new PayloadRequestBody(this.packets);
+            } else if (this.data != null) {
                 body = RequestBody.create(TEXT_MEDIA_TYPE, this.data);
             }
 
@@ -197,15 +284,23 @@ public class PollingXHR extends Polling {
                     .method(self.method, body)
                     .build();
 
-            requestCall = callFactory.newCall(request);
-            requestCall.enqueue(new Callback() {
+            Call call = callFactory.newCall(request);
+            requestCall = call;
+            call.enqueue(new Callback() {
                 @Override
                 public void onFailure(Call call, IOException e) {
+                    if (self.cancelled) {
+                        return;
+                    }
                     self.onError(e);
                 }
 
                 @Override
                 public void onResponse(Call call, Response response) throws IOException {
+                    if (self.cancelled) {
+                        response.close();
+                        return;
+                    }
                     self.response = response;
                     self.onResponseHeaders(response.headers().toMultimap());
 
@@ -220,6 +315,22 @@ public class PollingXHR extends Polling {
                     }
                 }
             });
+            if (this.cancelled) {
+                // cancelled while the call was being created
+                call.cancel();
+            }
+        }
+
+        /**
+         * Cancels the request. Nothing is emitted afterwards.
+         */
+        public void cancel() {
+            this.cancelled = true;
+            this.off();
+            Call call = this.requestCall;
+            if (call != null) {
+                call.cancel();
+            }
         }
 
         private void onSuccess() {
@@ -231,6 +342,10 @@ public class PollingXHR extends Polling {
             this.onSuccess();
         }
 
+        private void onPacket(Packet packet) {
+            this.emit(EVENT_PACKET, packet);
+        }
+
         private void onError(Exception err) {
             this.emit(EVENT_ERROR, err);
         }
@@ -247,19 +362,61 @@ public class PollingXHR extends Polling {
             ResponseBody body = response.body();
 
             try {
-                this.onData(body.string());
+                if (this.hasListeners(EVENT_PACKET)) {
+                    // decode the payload while it is being read, instead of buffering the whole body
+                    final Request self = this;
+                    Parser.DecodePayloadCallback<Object> callback = new Parser.DecodePayloadCallback<Object>() {
+                        @Override
+                        public boolean call(Packet<Object> packet, int index, int total) {
+                            self.onPacket(packet);
+                            return packet.packetType() != PacketType.CLOSE;
+                        }
+                    };
+                    if (this.textAsCharSequence) {
+                        Parser.decodePayloadViews(body.source(), callback);
+                    } else {
+                        Parser.decodePayload(body.source(), callback);
+                    }
+                    this.onSuccess();
+                } else {
+                    this.onData(body.string());
+                }
             } catch (IOException e) {
                 this.onError(e);
             }
         }
 
+        /**
+         * Encodes the payload into the request stream while it is being sent.
+         */
+        private static class PayloadRequestBody extends RequestBody {
+
+            private final Packet[] packets;
+
+            PayloadRequestBody(Packet[] packets) {
+                this.packets = packets;
+            }
+
+            @Override
+            public MediaType contentType() {
+                return TEXT_MEDIA_TYPE;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                Parser.encodePayload(this.packets, sink);
+            }
+        }
+
         public static class Options {
 
             public String uri;
             public String method;
             public String data;
+            public Packet[] packets;
             public Call.Factory callFactory;
             public Map<String, List<String>> extraHeaders;
+            public boolean textAsCharSequence;
         }
     }
 }
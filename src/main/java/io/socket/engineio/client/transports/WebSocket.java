@@ -1,21 +1,27 @@
 package io.socket.engineio.client.transports;
 
 
+import io.socket.engineio.client.EngineIOException;
+import io.socket.engineio.client.PollingDispatcher;
 import io.socket.engineio.client.Transport;
+import io.socket.engineio.parser.EncodedPacket;
 import io.socket.engineio.parser.Packet;
 import io.socket.engineio.parser.Parser;
 import io.socket.parseqs.ParseQS;
-import io.socket.thread.EventThread;
+import io.socket.thread.TimerWheel;
 import io.socket.yeast.Yeast;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.WebSocketListener;
 import okio.ByteString;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
@@ -25,11 +31,23 @@ public class WebSocket extends Transport {
 
     private static final Logger logger = Logger.getLogger(PollingXHR.class.getName());
 
-    private okhttp3.WebSocket ws;
+    /**
+     * The default amount of data queued by OkHttp under which the transport is writable.
+     */
+    public static final long DEFAULT_DRAIN_THRESHOLD = 1024 * 1024;
+
+    // how often the queue is checked while above the threshold
+    private static final long DRAIN_CHECK_INTERVAL = 10;
+
+    // also read by tryWrite, from any thread
+    private volatile okhttp3.WebSocket ws;
+    private final long drainThreshold;
+    private TimerWheel.Timeout drainCheck;
 
     public WebSocket(Options opts) {
         super(opts);
         this.name = NAME;
+        this.drainThreshold = opts.webSocketDrainThreshold > 0 ? opts.webSocketDrainThreshold : DEFAULT_DRAIN_THRESHOLD;
     }
 
     protected void doOpen() {
@@ -40,7 +58,7 @@ public class WebSocket extends Transport {
         this.emit(EVENT_REQUEST_HEADERS, headers);
 
         final WebSocket self = this;
-        Request.Builder builder = new Request.Builder().url(uri());
+        Request.Builder builder = PollingDispatcher.tag(new Request.Builder()).url(uri());
         for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
             for (String v : entry.getValue()) {
                 builder.addHeader(entry.getKey(), v);
@@ -51,7 +69,7 @@ public class WebSocket extends Transport {
             @Override
             public void onOpen(okhttp3.WebSocket webSocket, Response response) {
                 final Map<String, List<String>> headers = response.headers().toMultimap();
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
                         self.emit(EVENT_RESPONSE_HEADERS, headers);
@@ -65,12 +83,8 @@ public class WebSocket extends Transport {
                 if (text == null) {
                     return;
                 }
-                EventThread.exec(new Runnable() {
-                    @Override
-                    public void run() {
-                    self.onData(text);
-                    }
-                });
+                // decode on this thread, only the packet is handed over to the event loop
+                self.receive(self.decodePacket(text));
             }
 
             @Override
@@ -78,19 +92,18 @@ public class WebSocket extends Transport {
                 if (bytes == null) {
                     return;
                 }
-                EventThread.exec(new Runnable() {
-                    @Override
-                    public void run() {
-                        self.onData(bytes.toByteArray());
-                    }
-                });
+                self.receive(self.binaryAsByteBuffer
+                        ? self.decodePacket(bytes.asByteBuffer())
+                        : self.decodePacket(bytes.toByteArray()));
             }
 
             @Override
             public void onClosed(okhttp3.WebSocket webSocket, int code, String reason) {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
+                        // deliver the frames received before
+                        self.drainInbound();
                         self.onClose();
                     }
                 });
@@ -101,9 +114,11 @@ public class WebSocket extends Transport {
                 if (!(t instanceof Exception)) {
                     return;
                 }
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
+                        // deliver the frames received before
+                        self.drainInbound();
                         self.onError("websocket error", (Exception) t);
                     }
                 });
@@ -115,48 +130,135 @@ public class WebSocket extends Transport {
         final WebSocket self = this;
         this.writable = false;
 
-        final Runnable done = new Runnable() {
-            @Override
-            public void run() {
-                // fake drain
-                // defer to next tick to allow Socket to clear writeBuffer
-                EventThread.nextTick(new Runnable() {
-                    @Override
-                    public void run() {
-                        self.writable = true;
-                        self.emit(EVENT_DRAIN);
-                    }
-                });
-            }
-        };
-
-        final int[] total = new int[]{packets.length};
         for (Packet packet : packets) {
             if (this.readyState != ReadyState.OPENING && this.readyState != ReadyState.OPEN) {
                 // Ensure we don't try to send anymore packets if the socket ends up being closed due to an exception
-                break;
+                return;
             }
 
+            if (packet instanceof EncodedPacket) {
+                // already encoded, the frame is shared by all the sockets it is sent to
+                EncodedPacket encoded = (EncodedPacket) packet;
+                if (!this.send(encoded.isBinary() ? encoded.binaryFrame() : encoded.textFrame())) {
+                    return;
+                }
+                continue;
+            }
+
+            final boolean[] sent = new boolean[1];
             Parser.encodePacket(packet, new Parser.EncodeCallback() {
                 @Override
                 public void call(Object packet) {
-                    try {
-                        if (packet instanceof String) {
-                            self.ws.send((String) packet);
-                        } else if (packet instanceof byte[]) {
-                            self.ws.send(ByteString.of((byte[]) packet));
-                        }
-                    } catch (IllegalStateException e) {
-                        logger.fine("websocket closed before we could write");
+                    if (packet instanceof String) {
+                        sent[0] = self.send(packet);
+                    } else if (packet instanceof byte[]) {
+                        sent[0] = self.send(ByteString.of((byte[]) packet));
+                    } else if (packet instanceof ByteBuffer) {
+                        sent[0] = self.send(ByteString.of(((ByteBuffer) packet).duplicate()));
                     }
-
-                    if (0 == --total[0]) done.run();
                 }
             });
+            if (!sent[0]) {
+                return;
+            }
+        }
+
+        this.drainWhenBelowThreshold();
+    }
+
+    /**
+     * Writes a packet right away, from any thread, if the data queued by OkHttp is under the threshold.
+     * Nothing is emitted. The caller must make sure that the packets passed to {@link #write(Packet[])}
+     * have all been written, so that the packets stay in order.
+     *
+     * @param packet the packet.
+     * @return false if nothing was written.
+     */
+    public boolean tryWrite(Packet packet) {
+        final okhttp3.WebSocket ws = this.ws;
+        if (ws == null || ws.queueSize() >= this.drainThreshold) {
+            return false;
+        }
+
+        if (packet instanceof EncodedPacket) {
+            EncodedPacket encoded = (EncodedPacket) packet;
+            return encoded.isBinary() ? ws.send(encoded.binaryFrame()) : ws.send(encoded.textFrame());
+        }
+
+        final boolean[] sent = new boolean[1];
+        Parser.encodePacket(packet, new Parser.EncodeCallback() {
+            @Override
+            public void call(Object packet) {
+                if (packet instanceof String) {
+                    sent[0] = ws.send((String) packet);
+                } else if (packet instanceof byte[]) {
+                    sent[0] = ws.send(ByteString.of((byte[]) packet));
+                } else if (packet instanceof ByteBuffer) {
+                    sent[0] = ws.send(ByteString.of(((ByteBuffer) packet).duplicate()));
+                }
+            }
+        });
+        return sent[0];
+    }
+
+    /**
+     * Hands a frame to OkHttp.
+     *
+     * @param frame a String or a ByteString.
+     * @return false if the frame was refused, in which case the transport errors out.
+     */
+    private boolean send(Object frame) {
+        boolean sent;
+        try {
+            sent = frame instanceof String ? this.ws.send((String) frame) : this.ws.send((ByteString) frame);
+        } catch (IllegalStateException e) {
+            logger.fine("websocket closed before we could write");
+            return false;
         }
+        if (!sent) {
+            // OkHttp refuses frames once closing, which it does when its queue overflows
+            this.onError("websocket write error", new EngineIOException("websocket send queue full or closing"));
+        }
+        return sent;
+    }
+
+    /**
+     * Emits drain right away if the data queued by OkHttp is under the threshold, so that the socket
+     * can keep writing, or else once it is.
+     */
+    private void drainWhenBelowThreshold() {
+        if (this.ws == null || (this.readyState != ReadyState.OPENING && this.readyState != ReadyState.OPEN)) {
+            return;
+        }
+        if (this.ws.queueSize() < this.drainThreshold) {
+            this.writable = true;
+            this.emit(EVENT_DRAIN);
+            return;
+        }
+
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(String.format("websocket queue above threshold: %d bytes", this.ws.queueSize()));
+        }
+        final WebSocket self = this;
+        this.drainCheck = TimerWheel.shared().schedule(new Runnable() {
+            @Override
+            public void run() {
+                self.eventLoop.exec(new Runnable() {
+                    @Override
+                    public void run() {
+                        self.drainCheck = null;
+                        self.drainWhenBelowThreshold();
+                    }
+                });
+            }
+        }, DRAIN_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
     }
 
     protected void doClose() {
+        if (this.drainCheck != null) {
+            this.drainCheck.cancel();
+            this.drainCheck = null;
+        }
         if (ws != null) {
             ws.close(1000, "");
             ws = null;
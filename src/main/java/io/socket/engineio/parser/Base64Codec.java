@@ -0,0 +1,239 @@
+package io.socket.engineio.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import okio.BufferedSink;
+
+/**
+ * A table-driven Base64 codec (RFC 4648, standard alphabet, with padding and without line breaks)
+ * used for binary packets over polling. Unlike {@link Base64}, it encodes straight into the
+ * destination and decodes from an offset of the source, so no intermediate copy is made.
+ */
+public final class Base64Codec {
+
+    private static final byte[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes();
+
+    private static final int WHITESPACE = -2;
+    private static final int INVALID = -1;
+
+    private static final int[] DECODE_TABLE = new int[128];
+    static {
+        for (int i = 0; i < DECODE_TABLE.length; i++) {
+            DECODE_TABLE[i] = INVALID;
+        }
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE_TABLE[ALPHABET[i]] = i;
+        }
+        DECODE_TABLE[' '] = WHITESPACE;
+        DECODE_TABLE['\t'] = WHITESPACE;
+        DECODE_TABLE['\r'] = WHITESPACE;
+        DECODE_TABLE['\n'] = WHITESPACE;
+    }
+
+    // encode 3 KiB of input into 4 KiB of output at a time
+    private static final int CHUNK = 3 * 1024;
+
+    private Base64Codec() {}
+
+    public static int encodedLength(int len) {
+        return (len + 2) / 3 * 4;
+    }
+
+    /**
+     * Encodes the bytes and appends them to the builder.
+     */
+    public static void encode(byte[] src, int off, int len, StringBuilder builder) {
+        builder.ensureCapacity(builder.length() + encodedLength(len));
+        char[] out = new char[encodedLength(Math.min(len, CHUNK))];
+        int end = off + len;
+        while (off < end) {
+            int n = Math.min(end - off, CHUNK);
+            int written = encode(src, off, n, out);
+            builder.append(out, 0, written);
+            off += n;
+        }
+    }
+
+    /**
+     * Encodes the remaining bytes of the buffer and appends them to the builder, without changing its position.
+     */
+    public static void encode(ByteBuffer src, StringBuilder builder) {
+        if (src.hasArray()) {
+            encode(src.array(), src.arrayOffset() + src.position(), src.remaining(), builder);
+            return;
+        }
+
+        ByteBuffer in = src.duplicate();
+        byte[] chunk = new byte[Math.min(in.remaining(), CHUNK)];
+        while (in.hasRemaining()) {
+            int n = Math.min(in.remaining(), CHUNK);
+            in.get(chunk, 0, n);
+            encode(chunk, 0, n, builder);
+        }
+    }
+
+    public static String encodeToString(byte[] src, int off, int len) {
+        byte[] out = new byte[encodedLength(len)];
+        encode(src, off, len, out);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Encodes the bytes into the sink.
+     */
+    public static void encode(byte[] src, int off, int len, BufferedSink sink) throws IOException {
+        byte[] out = new byte[encodedLength(Math.min(len, CHUNK))];
+        int end = off + len;
+        while (off < end) {
+            int n = Math.min(end - off, CHUNK);
+            int written = encode(src, off, n, out);
+            sink.write(out, 0, written);
+            off += n;
+        }
+    }
+
+    /**
+     * Encodes the remaining bytes of the buffer into the sink, without changing its position.
+     */
+    public static void encode(ByteBuffer src, BufferedSink sink) throws IOException {
+        if (src.hasArray()) {
+            encode(src.array(), src.arrayOffset() + src.position(), src.remaining(), sink);
+            return;
+        }
+
+        ByteBuffer in = src.duplicate();
+        byte[] chunk = new byte[Math.min(in.remaining(), CHUNK)];
+        byte[] out = new byte[encodedLength(chunk.length)];
+        while (in.hasRemaining()) {
+            int n = Math.min(in.remaining(), CHUNK);
+            in.get(chunk, 0, n);
+            int written = encode(chunk, 0, n, out);
+            sink.write(out, 0, written);
+        }
+    }
+
+    private static int encode(byte[] src, int off, int len, char[] out) {
+        int end = off + len;
+        int o = 0;
+        int i = off;
+        for (; i + 3 <= end; i += 3) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+            out[o++] = (char) ALPHABET[bits >>> 18];
+            out[o++] = (char) ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = (char) ALPHABET[(bits >>> 6) & 0x3f];
+            out[o++] = (char) ALPHABET[bits & 0x3f];
+        }
+        int remaining = end - i;
+        if (remaining > 0) {
+            int bits = (src[i] & 0xff) << 16 | (remaining == 2 ? (src[i + 1] & 0xff) << 8 : 0);
+            out[o++] = (char) ALPHABET[bits >>> 18];
+            out[o++] = (char) ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = remaining == 2 ? (char) ALPHABET[(bits >>> 6) & 0x3f] : '=';
+            out[o++] = '=';
+        }
+        return o;
+    }
+
+    private static int encode(byte[] src, int off, int len, byte[] out) {
+        int end = off + len;
+        int o = 0;
+        int i = off;
+        for (; i + 3 <= end; i += 3) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+            out[o++] = ALPHABET[bits >>> 18];
+            out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = ALPHABET[(bits >>> 6) & 0x3f];
+            out[o++] = ALPHABET[bits & 0x3f];
+        }
+        int remaining = end - i;
+        if (remaining > 0) {
+            int bits = (src[i] & 0xff) << 16 | (remaining == 2 ? (src[i + 1] & 0xff) << 8 : 0);
+            out[o++] = ALPHABET[bits >>> 18];
+            out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = remaining == 2 ? ALPHABET[(bits >>> 6) & 0x3f] : (byte) '=';
+            out[o++] = '=';
+        }
+        return o;
+    }
+
+    /**
+     * Decodes the characters between {@code off} (inclusive) and {@code end} (exclusive). Whitespace
+     * (as inserted by line-wrapping encoders) is ignored and the padding is optional.
+     *
+     * @throws IllegalArgumentException if the input is not valid Base64.
+     */
+    public static byte[] decode(CharSequence src, int off, int end) {
+        // drop the padding, then size the output as if there was no whitespace and trim it if there was
+        while (end > off) {
+            char c = src.charAt(end - 1);
+            if (c != '=' && (c >= 128 || DECODE_TABLE[c] != WHITESPACE)) {
+                break;
+            }
+            end--;
+        }
+        int chars = end - off;
+        byte[] out = new byte[chars / 4 * 3 + Math.max(chars % 4 - 1, 0)];
+
+        int o = 0;
+        int bits = 0;
+        int count = 0;
+        int i = off;
+        while (i < end) {
+            if (count == 0) {
+                // fast path: a whole quantum at once, as long as there is no whitespace or invalid character
+                // (any negative table value makes the combined value negative)
+                while (i + 4 <= end) {
+                    char c0 = src.charAt(i);
+                    char c1 = src.charAt(i + 1);
+                    char c2 = src.charAt(i + 2);
+                    char c3 = src.charAt(i + 3);
+                    if ((c0 | c1 | c2 | c3) >= 128) {
+                        break;
+                    }
+                    int quantum = DECODE_TABLE[c0] << 18 | DECODE_TABLE[c1] << 12
+                            | DECODE_TABLE[c2] << 6 | DECODE_TABLE[c3];
+                    if (quantum < 0) {
+                        break;
+                    }
+                    out[o++] = (byte) (quantum >> 16);
+                    out[o++] = (byte) (quantum >> 8);
+                    out[o++] = (byte) quantum;
+                    i += 4;
+                }
+                if (i == end) {
+                    break;
+                }
+            }
+
+            char c = src.charAt(i++);
+            int value = c < 128 ? DECODE_TABLE[c] : INVALID;
+            if (value < 0) {
+                if (value == WHITESPACE) {
+                    continue;
+                }
+                throw new IllegalArgumentException("bad base-64");
+            }
+            bits = bits << 6 | value;
+            if (++count == 4) {
+                out[o++] = (byte) (bits >> 16);
+                out[o++] = (byte) (bits >> 8);
+                out[o++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 1) {
+            throw new IllegalArgumentException("bad base-64");
+        } else if (count == 3) {
+            out[o++] = (byte) (bits >> 10);
+            out[o++] = (byte) (bits >> 2);
+        } else if (count == 2) {
+            out[o++] = (byte) (bits >> 4);
+        }
+        return o == out.length ? out : Arrays.copyOf(out, o);
+    }
+}
@@ -0,0 +1,82 @@
+package io.socket.engineio.parser;
+
+import java.nio.ByteBuffer;
+
+import okio.ByteString;
+
+
+/**
+ * A packet whose encoded forms are computed once: the WebSocket frame when it is created with
+ * {@link Parser#encodePacket(Packet)}, and the polling payload entry when it is first sent over polling.
+ * The same instance can be sent to any number of sockets: the transports write the precomputed WebSocket
+ * frame or polling payload entry instead of encoding the packet again.
+ *
+ * <p>The encoded forms are immutable. {@link #type} and {@link #data} are kept for listeners of the
+ * packet events, but modifying them has no effect on what is sent.</p>
+ */
+public final class EncodedPacket<T> extends Packet<T> {
+
+    private final String textFrame;
+    private final ByteString binaryFrame;
+    // computed on first use, see payload()
+    private ByteString payload;
+
+    EncodedPacket(PacketType type, T data) {
+        super(type, data);
+
+        if (data instanceof byte[] || data instanceof ByteBuffer) {
+            ByteString frame;
+            if (data instanceof byte[]) {
+                frame = ByteString.of((byte[]) data);
+            } else {
+                frame = ByteString.of(((ByteBuffer) data).duplicate());
+            }
+
+            this.textFrame = null;
+            this.binaryFrame = frame;
+        } else {
+            char code = (char) ('0' + type.code);
+            String frame = data != null ? code + String.valueOf(data) : String.valueOf(code);
+
+            this.textFrame = frame;
+            this.binaryFrame = null;
+        }
+    }
+
+    /**
+     * @return true if the packet is sent as a binary WebSocket frame.
+     */
+    public boolean isBinary() {
+        return this.binaryFrame != null;
+    }
+
+    /**
+     * @return the WebSocket text frame, or null if the packet is binary.
+     */
+    public String textFrame() {
+        return this.textFrame;
+    }
+
+    /**
+     * @return the WebSocket binary frame, or null if the packet is not binary.
+     */
+    public ByteString binaryFrame() {
+        return this.binaryFrame;
+    }
+
+    /**
+     * @return the entry of the packet in a polling payload, as UTF-8 bytes ({@link ByteString#utf8()}
+     * returns it as a string, computed once as well).
+     */
+    public ByteString payload() {
+        // racy single-check: the payload is immutable, so computing it twice is harmless
+        ByteString payload = this.payload;
+        if (payload == null) {
+            payload = this.binaryFrame != null
+                    ? ByteString.encodeUtf8("b" + this.binaryFrame.base64())
+                    : ByteString.encodeUtf8(this.textFrame);
+            this.payload = payload;
+        }
+        return payload;
+    }
+}
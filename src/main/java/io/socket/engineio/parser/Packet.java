@@ -15,6 +15,8 @@ public class Packet<T> {
     public String type;
     public T data;
 
+    private PacketType packetType;
+
 
     public Packet(String type) {
         this(type, null);
@@ -24,4 +26,29 @@ public class Packet<T> {
         this.type = type;
         this.data = data;
     }
+
+    public Packet(PacketType type) {
+        this(type, null);
+    }
+
+    public Packet(PacketType type, T data) {
+        this.type = type.toString();
+        this.data = data;
+        this.packetType = type;
+    }
+
+    /**
+     * Returns the type of this packet as a {@link PacketType}. {@link #type} stays the source of truth:
+     * the resolved value is cached and only looked up again when {@link #type} has been reassigned.
+     *
+     * @return the packet type, or null if {@link #type} is unknown.
+     */
+    public PacketType packetType() {
+        PacketType packetType = this.packetType;
+        if (packetType == null || packetType.toString() != this.type) {
+            packetType = PacketType.fromName(this.type);
+            this.packetType = packetType;
+        }
+        return packetType;
+    }
 }
@@ -0,0 +1,74 @@
+package io.socket.engineio.parser;
+
+
+/**
+ * The packet types of the Engine.IO protocol, along with their wire codes.
+ */
+public enum PacketType {
+
+    OPEN(0, Packet.OPEN),
+    CLOSE(1, Packet.CLOSE),
+    PING(2, Packet.PING),
+    PONG(3, Packet.PONG),
+    MESSAGE(4, Packet.MESSAGE),
+    UPGRADE(5, Packet.UPGRADE),
+    NOOP(6, Packet.NOOP),
+    ERROR(-1, Packet.ERROR);
+
+    private static final PacketType[] codes = new PacketType[] {
+        OPEN, CLOSE, PING, PONG, MESSAGE, UPGRADE, NOOP
+    };
+
+    /**
+     * The code of the type on the wire, or -1 for the local error type.
+     */
+    public final int code;
+
+    private final String name;
+
+    PacketType(int code, String name) {
+        this.code = code;
+        this.name = name;
+    }
+
+    /**
+     * Returns the type for a wire code.
+     *
+     * @param code the wire code.
+     * @return the type, or null if the code is unknown.
+     */
+    public static PacketType fromCode(int code) {
+        return code >= 0 && code < codes.length ? codes[code] : null;
+    }
+
+    /**
+     * Returns the type for one of the string constants of {@link Packet}.
+     *
+     * @param name a type name such as {@link Packet#MESSAGE}.
+     * @return the type, or null if the name is unknown.
+     */
+    public static PacketType fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        switch (name) {
+            case Packet.OPEN: return OPEN;
+            case Packet.CLOSE: return CLOSE;
+            case Packet.PING: return PING;
+            case Packet.PONG: return PONG;
+            case Packet.MESSAGE: return MESSAGE;
+            case Packet.UPGRADE: return UPGRADE;
+            case Packet.NOOP: return NOOP;
+            case Packet.ERROR: return ERROR;
+            default: return null;
+        }
+    }
+
+    /**
+     * @return the string constant of {@link Packet} for this type.
+     */
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -1,7 +1,10 @@
 package io.socket.engineio.parser;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
 
 public class Parser {
 
@@ -9,44 +12,62 @@ public class Parser {
 
     private static final char SEPARATOR = '\u001e';
 
-    private static final Map<String, Integer> packets = new HashMap<String, Integer>() {{
-        put(Packet.OPEN, 0);
-        put(Packet.CLOSE, 1);
-        put(Packet.PING, 2);
-        put(Packet.PONG, 3);
-        put(Packet.MESSAGE, 4);
-        put(Packet.UPGRADE, 5);
-        put(Packet.NOOP, 6);
-    }};
-
-    private static final Map<Integer, String> packetslist = new HashMap<>();
-    static {
-        for (Map.Entry<String, Integer> entry : packets.entrySet()) {
-            packetslist.put(entry.getValue(), entry.getKey());
-        }
-    }
-
-    private static final Packet<String> err = new Packet<String>(Packet.ERROR, "parser error");
+    private static final Packet<String> err = new Packet<String>(PacketType.ERROR, "parser error");
 
     private Parser() {}
 
     public static void encodePacket(Packet packet, EncodeCallback callback) {
-        if (packet.data instanceof byte[]) {
+        if (packet instanceof EncodedPacket) {
+            EncodedPacket encoded = (EncodedPacket) packet;
+            if (encoded.isBinary()) {
+                ((EncodeCallback<ByteBuffer>) callback).call(encoded.binaryFrame().asByteBuffer());
+            } else {
+                ((EncodeCallback<String>) callback).call(encoded.textFrame());
+            }
+        } else if (packet.data instanceof byte[]) {
             ((EncodeCallback<byte[]>) callback).call(((Packet<byte[]>) packet).data);
+        } else if (packet.data instanceof ByteBuffer) {
+            ((EncodeCallback<ByteBuffer>) callback).call(((Packet<ByteBuffer>) packet).data);
         } else {
-            String type = String.valueOf(packets.get(packet.type));
-            String content = packet.data != null ? String.valueOf(packet.data) : "";
-            ((EncodeCallback<String>) callback).call(type + content);
+            char type = (char) ('0' + packet.packetType().code);
+            String encoded = packet.data != null ? type + String.valueOf(packet.data) : String.valueOf(type);
+            ((EncodeCallback<String>) callback).call(encoded);
         }
     }
 
-    private static void encodePacketAsBase64(Packet packet, EncodeCallback<String> callback) {
-        if (packet.data instanceof byte[]) {
-            byte[] data = ((Packet<byte[]>) packet).data;
-            String value = "b" + Base64.encodeToString(data, Base64.DEFAULT);
-            callback.call(value);
+    /**
+     * Encodes a packet once, so that it can be sent to any number of sockets without being encoded again.
+     *
+     * @param packet the packet to encode, usually a {@link PacketType#MESSAGE} one.
+     * @return the encoded packet.
+     */
+    public static <T> EncodedPacket<T> encodePacket(Packet<T> packet) {
+        if (packet instanceof EncodedPacket) {
+            return (EncodedPacket<T>) packet;
+        }
+
+        PacketType type = packet.packetType();
+        if (type == null || type == PacketType.ERROR) {
+            throw new IllegalArgumentException("cannot encode a packet of type " + packet.type);
+        }
+        return new EncodedPacket<T>(type, packet.data);
+    }
+
+    private static void encodePacketAsBase64(Packet packet, StringBuilder builder) {
+        if (packet instanceof EncodedPacket) {
+            builder.append(((EncodedPacket) packet).payload().utf8());
+        } else if (packet.data instanceof byte[]) {
+            byte[] data = (byte[]) packet.data;
+            builder.append('b');
+            Base64Codec.encode(data, 0, data.length, builder);
+        } else if (packet.data instanceof ByteBuffer) {
+            builder.append('b');
+            Base64Codec.encode((ByteBuffer) packet.data, builder);
         } else {
-            encodePacket(packet, callback);
+            builder.append((char) ('0' + packet.packetType().code));
+            if (packet.data != null) {
+                builder.append(String.valueOf(packet.data));
+            }
         }
     }
 
@@ -55,38 +76,65 @@ public class Parser {
             return err;
         }
 
-        int type;
-        try {
-            type = Character.getNumericValue(data.charAt(0));
-        } catch (IndexOutOfBoundsException e) {
-            type = -1;
+        PacketType type = data.length() > 0 ? PacketType.fromCode(data.charAt(0) - '0') : null;
+        if (type == null) {
+            return err;
+        }
+
+        if (data.length() > 1) {
+            return new Packet<String>(type, data.substring(1));
+        } else {
+            return new Packet<String>(type);
         }
+    }
 
-        if (type < 0 || type >= packetslist.size()) {
+    /**
+     * Decodes a text packet like {@link #decodePacket(String)}, except that the content of a message
+     * packet is a {@link StringSlice} over the frame instead of a copy of it. Other packets are decoded
+     * as usual, with string data.
+     *
+     * @param data the received frame.
+     * @return the decoded packet.
+     */
+    public static Packet decodePacketView(String data) {
+        if (data == null) {
             return err;
         }
 
+        PacketType type = data.length() > 0 ? PacketType.fromCode(data.charAt(0) - '0') : null;
+        if (type != PacketType.MESSAGE) {
+            return decodePacket(data);
+        }
+
         if (data.length() > 1) {
-            return new Packet<String>(packetslist.get(type), data.substring(1));
+            return new Packet<CharSequence>(type, new StringSlice(data, 1, data.length()));
         } else {
-            return new Packet<String>(packetslist.get(type));
+            return new Packet<CharSequence>(type);
         }
     }
 
     public static Packet decodeBase64Packet(String data) {
-        if (data == null) {
+        return decodeBase64Packet(data, false);
+    }
+
+    private static Packet decodeBase64Packet(String data, boolean view) {
+        if (data == null || data.length() == 0) {
             return err;
         }
 
         if (data.charAt(0) == 'b') {
-            return new Packet(Packet.MESSAGE, Base64.decode(data.substring(1), Base64.DEFAULT));
+            return new Packet(PacketType.MESSAGE, Base64Codec.decode(data, 1, data.length()));
         } else {
-            return decodePacket(data);
+            return view ? decodePacketView(data) : decodePacket(data);
         }
     }
 
     public static Packet<byte[]> decodePacket(byte[] data) {
-        return new Packet<>(Packet.MESSAGE, data);
+        return new Packet<>(PacketType.MESSAGE, data);
+    }
+
+    public static Packet<ByteBuffer> decodePacket(ByteBuffer data) {
+        return new Packet<>(PacketType.MESSAGE, data);
     }
 
     public static void encodePayload(Packet[] packets, EncodeCallback<String> callback) {
@@ -98,43 +146,149 @@ public class Parser {
         final StringBuilder result = new StringBuilder();
 
         for (int i = 0, l = packets.length; i < l; i++) {
-            final boolean isLast = i == l - 1;
-            encodePacketAsBase64(packets[i], new EncodeCallback<String>() {
-                @Override
-                public void call(String message) {
-                    result.append(message);
-                    if (!isLast) {
-                        result.append(SEPARATOR);
-                    }
-                }
-            });
+            if (i > 0) {
+                result.append(SEPARATOR);
+            }
+            encodePacketAsBase64(packets[i], result);
         }
 
         callback.call(result.toString());
     }
 
-    public static void decodePayload(String data, DecodePayloadCallback<String> callback) {
+    /**
+     * Encodes the packets as a payload directly into the sink, without building the payload string first.
+     *
+     * @param packets packets to encode.
+     * @param sink the sink to write the payload to, e.g. the body of a polling request.
+     * @throws IOException if the sink could not be written.
+     */
+    public static void encodePayload(Packet[] packets, BufferedSink sink) throws IOException {
+        if (packets.length == 0) {
+            sink.writeUtf8("0:");
+            return;
+        }
+
+        for (int i = 0, l = packets.length; i < l; i++) {
+            if (i > 0) {
+                sink.writeByte(SEPARATOR);
+            }
+            encodePacketAsBase64(packets[i], sink);
+        }
+    }
+
+    private static void encodePacketAsBase64(Packet packet, BufferedSink sink) throws IOException {
+        if (packet instanceof EncodedPacket) {
+            sink.write(((EncodedPacket) packet).payload());
+        } else if (packet.data instanceof byte[]) {
+            byte[] data = (byte[]) packet.data;
+            sink.writeByte('b');
+            Base64Codec.encode(data, 0, data.length, sink);
+        } else if (packet.data instanceof ByteBuffer) {
+            sink.writeByte('b');
+            Base64Codec.encode((ByteBuffer) packet.data, sink);
+        } else {
+            sink.writeByte('0' + packet.packetType().code);
+            if (packet.data != null) {
+                sink.writeUtf8(String.valueOf(packet.data));
+            }
+        }
+    }
+
+    public static void decodePayload(String data, DecodePayloadCallback<? super String> callback) {
+        decodePayload(data, callback, false);
+    }
+
+    /**
+     * Decodes a payload like {@link #decodePayload(String, DecodePayloadCallback)}, with the content of
+     * the message packets as {@link StringSlice} views (see {@link #decodePacketView(String)}).
+     */
+    public static void decodePayloadViews(String data, DecodePayloadCallback<? super CharSequence> callback) {
+        decodePayload(data, callback, true);
+    }
+
+    private static void decodePayload(String data, DecodePayloadCallback<?> callback, boolean view) {
         if (data == null || data.length() == 0) {
-            callback.call(err, 0, 1);
+            call(callback, err, 0, 1);
             return;
         }
 
         String[] messages = data.split(String.valueOf(SEPARATOR));
 
         for (int i = 0, l = messages.length; i < l; i++) {
-            Packet<String> packet = decodeBase64Packet(messages[i]);
-            if (err.type.equals(packet.type) && err.data.equals(packet.data)) {
-                callback.call(err, 0, 1);
+            Packet packet = decodeBase64Packet(messages[i], view);
+            if (packet == err) {
+                call(callback, err, 0, 1);
                 return;
             }
 
-            boolean ret = callback.call(packet, i, l);
+            boolean ret = call(callback, packet, i, l);
             if (!ret) {
                 return;
             }
         }
     }
 
+    /**
+     * Decodes a payload incrementally while it is read from the source. Each packet is handed to the
+     * callback as soon as its separator (or the end of the source) has been read, so the payload is
+     * never buffered as a whole. The total number of packets is only known once the last packet is
+     * reached: it is passed as {@code -1} until then.
+     *
+     * @param source the payload source, e.g. the body of a polling response.
+     * @param callback
+     * @throws IOException if the source could not be read.
+     */
+    public static void decodePayload(BufferedSource source, DecodePayloadCallback<? super String> callback) throws IOException {
+        decodePayload(source, callback, false);
+    }
+
+    /**
+     * Decodes a payload like {@link #decodePayload(BufferedSource, DecodePayloadCallback)}, with the content
+     * of the message packets as {@link StringSlice} views (see {@link #decodePacketView(String)}).
+     */
+    public static void decodePayloadViews(BufferedSource source, DecodePayloadCallback<? super CharSequence> callback) throws IOException {
+        decodePayload(source, callback, true);
+    }
+
+    private static void decodePayload(BufferedSource source, DecodePayloadCallback<?> callback, boolean view) throws IOException {
+        if (source.exhausted()) {
+            call(callback, err, 0, 1);
+            return;
+        }
+
+        for (int i = 0; ; i++) {
+            long end = source.indexOf((byte) SEPARATOR);
+            boolean isLast = end == -1;
+            String message = isLast ? source.readUtf8() : source.readUtf8(end);
+            if (!isLast) {
+                source.skip(1);
+            } else if (i > 0 && message.length() == 0) {
+                // trailing separator
+                return;
+            }
+
+            Packet packet = decodeBase64Packet(message, view);
+            if (packet == err) {
+                call(callback, err, 0, 1);
+                return;
+            }
+
+            boolean ret = call(callback, packet, i, isLast ? i + 1 : -1);
+            if (!ret || isLast) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hands a decoded packet to a callback. A payload mixes text and binary packets, so the type parameter
+     * of the callback only tells how text is decoded.
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean call(DecodePayloadCallback<?> callback, Packet packet, int index, int total) {
+        return ((DecodePayloadCallback<Object>) callback).call((Packet<Object>) packet, index, total);
+    }
+
     public interface EncodeCallback<T> {
 
         void call(T data);
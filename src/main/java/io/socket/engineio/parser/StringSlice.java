@@ -0,0 +1,101 @@
+package io.socket.engineio.parser;
+
+
+/**
+ * A read-only view over a range of a string, used to deliver the content of a text message without copying
+ * it out of the received frame. The copy is only made when {@link #toString()} is called, and then cached.
+ *
+ * <p>{@link #hashCode()} is the same as the one of the equivalent {@link String}, and {@link #equals(Object)}
+ * compares the content of two slices. Use {@link #contentEquals(CharSequence)} to compare with other
+ * character sequences.</p>
+ */
+public final class StringSlice implements CharSequence {
+
+    private final String source;
+    private final int offset;
+    private final int length;
+
+    private String string;
+    private int hash;
+
+    public StringSlice(String source, int start, int end) {
+        if (start < 0 || end > source.length() || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + source.length());
+        }
+        this.source = source;
+        this.offset = start;
+        this.length = end - start;
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + this.length);
+        }
+        return this.source.charAt(this.offset + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > this.length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + this.length);
+        }
+        return new StringSlice(this.source, this.offset + start, this.offset + end);
+    }
+
+    public boolean contentEquals(CharSequence other) {
+        if (other == null || other.length() != this.length) {
+            return false;
+        }
+        if (other instanceof String) {
+            return this.source.regionMatches(this.offset, (String) other, 0, this.length);
+        }
+        for (int i = 0; i < this.length; i++) {
+            if (this.source.charAt(this.offset + i) != other.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StringSlice)) return false;
+        StringSlice other = (StringSlice) o;
+        return other.length == this.length
+                && other.source.regionMatches(other.offset, this.source, this.offset, this.length);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = this.hash;
+        if (h == 0 && this.length > 0) {
+            for (int i = this.offset, end = this.offset + this.length; i < end; i++) {
+                h = 31 * h + this.source.charAt(i);
+            }
+            this.hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * @return the content as a string, copied on the first call only.
+     */
+    @Override
+    public String toString() {
+        String string = this.string;
+        if (string == null) {
+            string = this.offset == 0 && this.length == this.source.length()
+                    ? this.source
+                    : this.source.substring(this.offset, this.offset + this.length);
+            this.string = string;
+        }
+        return string;
+    }
+}
@@ -0,0 +1,109 @@
+package io.socket.thread;
+
+
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A loop running tasks one at a time, in order. A socket and its transports run all their
+ * non-background tasks on the same loop.
+ *
+ * The default loop is {@link EventThread}. Use {@link EventLoopGroup} to spread sockets over
+ * several threads, or {@link #wrap(Executor)} to run them on an existing event loop.
+ */
+public abstract class EventLoop implements Executor {
+
+    private static final Logger logger = Logger.getLogger(EventLoop.class.getName());
+
+    /**
+     * @return the loop backed by {@link EventThread}.
+     */
+    public static EventLoop defaultLoop() {
+        return EventThread.loop();
+    }
+
+    /**
+     * Creates a loop running its tasks on the given executor, such as the event loop of another
+     * framework. The executor must run the tasks one at a time, in the order they are submitted.
+     *
+     * @param executor the executor.
+     * @return the loop.
+     */
+    public static EventLoop wrap(Executor executor) {
+        return new ExecutorEventLoop(executor);
+    }
+
+    /**
+     * check if the current thread is running a task of this loop.
+     *
+     * @return true if the current thread is running a task of this loop.
+     */
+    public abstract boolean isCurrent();
+
+    /**
+     * Executes a task on the next loop.
+     *
+     * @param task
+     */
+    public abstract void nextTick(Runnable task);
+
+    /**
+     * Executes a task in this loop: right away if called from the loop, on the next loop otherwise.
+     *
+     * @param task
+     */
+    public void exec(Runnable task) {
+        if (this.isCurrent()) {
+            task.run();
+        } else {
+            this.nextTick(task);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        this.nextTick(task);
+    }
+
+
+    private static class ExecutorEventLoop extends EventLoop {
+
+        // the loop whose task the current thread is running, since the thread may be shared
+        private static final ThreadLocal<ExecutorEventLoop> current = new ThreadLocal<ExecutorEventLoop>();
+
+        private final Executor executor;
+
+        ExecutorEventLoop(Executor executor) {
+            if (executor == null) {
+                throw new NullPointerException("executor");
+            }
+            this.executor = executor;
+        }
+
+        @Override
+        public boolean isCurrent() {
+            return current.get() == this;
+        }
+
+        @Override
+        public void nextTick(final Runnable task) {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ExecutorEventLoop previous = current.get();
+                    current.set(ExecutorEventLoop.this);
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        logger.log(Level.SEVERE, "Task threw exception", e);
+                        throw e;
+                    } finally {
+                        current.set(previous);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.socket.thread;
+
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A set of loops handed out in turn, so that sockets are spread over several threads. Each socket
+ * sticks to the loop it was given, which keeps its events in order.
+ */
+public class EventLoopGroup {
+
+    private final EventLoop[] loops;
+    private final AtomicInteger index = new AtomicInteger();
+
+    /**
+     * Creates a group of loops, each with its own thread.
+     *
+     * @param nLoops the number of loops, typically the number of available processors.
+     */
+    public EventLoopGroup(int nLoops) {
+        if (nLoops <= 0) {
+            throw new IllegalArgumentException("nLoops must be positive: " + nLoops);
+        }
+        this.loops = new EventLoop[nLoops];
+        for (int i = 0; i < nLoops; i++) {
+            this.loops[i] = new ThreadEventLoop("EventThread-" + i);
+        }
+    }
+
+    /**
+     * Creates a group of existing loops, for example ones created with {@link EventLoop#wrap}.
+     *
+     * @param loops the loops.
+     */
+    public EventLoopGroup(EventLoop... loops) {
+        if (loops.length == 0) {
+            throw new IllegalArgumentException("no loops");
+        }
+        this.loops = loops.clone();
+    }
+
+    /**
+     * @return the next loop, in turn.
+     */
+    public EventLoop next() {
+        return this.loops[(this.index.getAndIncrement() & Integer.MAX_VALUE) % this.loops.length];
+    }
+
+    public int size() {
+        return this.loops.length;
+    }
+}
@@ -1,39 +1,27 @@
 package io.socket.thread;
 
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
-
 /**
  * The thread for event loop. All non-background tasks run within this thread.
+ *
+ * The thread is kept alive for a while once there is nothing left to do, and stopped afterwards
+ * so that it does not prevent the JVM from exiting. The loops of an {@link EventLoopGroup} run on
+ * threads of this class as well.
  */
 public class EventThread extends Thread {
 
-    private static final Logger logger = Logger.getLogger(EventThread.class.getName());
-
-    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
-        @Override
-        public Thread newThread(Runnable runnable) {
-            thread = new EventThread(runnable);
-            thread.setName("EventThread");
-            thread.setDaemon(Thread.currentThread().isDaemon());
-            return thread;
-        }
-    };
-
-    private static EventThread thread;
+    private static final ThreadEventLoop LOOP = new ThreadEventLoop("EventThread");
 
-    private static ExecutorService service;
+    /*package*/ final ThreadEventLoop loop;
 
-    private static int counter = 0;
 
-
-    private EventThread(Runnable runnable) {
+    /*package*/ EventThread(ThreadEventLoop loop, Runnable runnable) {
         super(runnable);
+        this.loop = loop;
+    }
+
+    /*package*/ static EventLoop loop() {
+        return LOOP;
     }
 
     /**
@@ -42,7 +30,7 @@ public class EventThread extends Thread {
      * @return true if the current thread is EventThread.
      */
     public static boolean isCurrent() {
-        return currentThread() == thread;
+        return LOOP.isCurrent();
     }
 
     /**
@@ -51,11 +39,7 @@ public class EventThread extends Thread {
      * @param task
      */
     public static void exec(Runnable task) {
-        if (isCurrent()) {
-            task.run();
-        } else {
-            nextTick(task);
-        }
+        LOOP.exec(task);
     }
 
     /**
@@ -64,34 +48,6 @@ public class EventThread extends Thread {
      * @param task
      */
     public static void nextTick(final Runnable task) {
-        ExecutorService executor;
-        synchronized (EventThread.class) {
-          counter++;
-          if (service == null) {
-              service = Executors.newSingleThreadExecutor(THREAD_FACTORY);
-          }
-          executor = service;
-        }
-
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    task.run();
-                } catch (Throwable t) {
-                    logger.log(Level.SEVERE, "Task threw exception", t);
-                    throw t;
-                } finally {
-                    synchronized (EventThread.class) {
-                        counter--;
-                        if (counter == 0) {
-                            service.shutdown();
-                            service = null;
-                            thread = null;
-                        }
-                    }
-                }
-            }
-        });
+        LOOP.nextTick(task);
     }
 }
@@ -0,0 +1,67 @@
+package io.socket.thread;
+
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Runs tasks one at a time, in the order they are submitted, on an executor that may run tasks
+ * concurrently. A burst of tasks is run by a single task of the underlying executor.
+ */
+public class SerialExecutor implements Executor {
+
+    private static final Logger logger = Logger.getLogger(SerialExecutor.class.getName());
+
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            Runnable task;
+            while ((task = SerialExecutor.this.tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.log(Level.SEVERE, "Task threw exception", t);
+                }
+            }
+            SerialExecutor.this.scheduled.set(false);
+            // a task offered after the queue was found empty
+            if (!SerialExecutor.this.tasks.isEmpty()) {
+                SerialExecutor.this.schedule();
+            }
+        }
+    };
+
+    public SerialExecutor(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        this.tasks.offer(task);
+        this.schedule();
+    }
+
+    private void schedule() {
+        if (this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this.drain);
+            } catch (RejectedExecutionException e) {
+                this.scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.socket.thread;
+
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A loop with its own {@link EventThread}. The thread is started when a task is submitted, waits for
+ * more tasks once the queue is empty, and stops after {@link #KEEP_ALIVE_NANOS} without any task.
+ *
+ * Tasks are submitted to a lock-free queue: a producer only has to wake the thread up when it is
+ * waiting, or to start one when it has stopped.
+ */
+/*package*/ class ThreadEventLoop extends EventLoop {
+
+    private static final Logger logger = Logger.getLogger(ThreadEventLoop.class.getName());
+
+    /*package*/ static final long KEEP_ALIVE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int STOPPED = 0;
+    private static final int RUNNING = 1;
+    private static final int WAITING = 2;
+
+    private final String name;
+    private final long keepAliveNanos;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicInteger state = new AtomicInteger(STOPPED);
+
+    // the current thread, only read to wake it up
+    private volatile Thread thread;
+
+    ThreadEventLoop(String name) {
+        this(name, KEEP_ALIVE_NANOS);
+    }
+
+    /*package*/ ThreadEventLoop(String name, long keepAliveNanos) {
+        this.name = name;
+        this.keepAliveNanos = keepAliveNanos;
+    }
+
+    @Override
+    public boolean isCurrent() {
+        Thread current = Thread.currentThread();
+        return current instanceof EventThread && ((EventThread) current).loop == this;
+    }
+
+    @Override
+    public void nextTick(Runnable task) {
+        this.tasks.offer(task);
+
+        while (true) {
+            int state = this.state.get();
+            if (state == WAITING) {
+                if (this.state.compareAndSet(WAITING, RUNNING)) {
+                    LockSupport.unpark(this.thread);
+                    return;
+                }
+            } else if (state == STOPPED) {
+                if (this.state.compareAndSet(STOPPED, RUNNING)) {
+                    this.start();
+                    return;
+                }
+            } else {
+                // the thread is running and checks the queue before waiting
+                return;
+            }
+            // the thread changed its state meanwhile, e.g. it stopped after its keep-alive
+        }
+    }
+
+    private void start() {
+        Thread thread = new EventThread(this, new Runnable() {
+            @Override
+            public void run() {
+                ThreadEventLoop.this.run();
+            }
+        });
+        thread.setName(this.name);
+        thread.setDaemon(Thread.currentThread().isDaemon());
+        this.thread = thread;
+        thread.start();
+    }
+
+    private void run() {
+        while (true) {
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.log(Level.SEVERE, "Task threw exception", t);
+                }
+            }
+
+            this.state.set(WAITING);
+            // a task offered before the state changed would not wake the thread up
+            if (!this.tasks.isEmpty()) {
+                this.state.set(RUNNING);
+                continue;
+            }
+
+            long deadline = System.nanoTime() + this.keepAliveNanos;
+            while (this.state.get() == WAITING) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    if (this.state.compareAndSet(WAITING, STOPPED)) {
+                        // the next task starts a new thread
+                        return;
+                    }
+                    break;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package io.socket.thread;
+
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A hashed wheel timer shared by all the sockets, for timeouts that are postponed much more often
+ * than they fire, such as heartbeat timeouts.
+ *
+ * A single daemon thread advances the wheel by one tick at a time and runs the expired tasks, so
+ * tasks must be short (typically, hand over to {@link EventThread}). Postponing a timeout only
+ * updates its deadline: the new deadline is checked when the wheel reaches the old one, and the
+ * timeout is then moved further along the wheel. The thread stops once no timeout is pending.
+ */
+public final class TimerWheel {
+
+    private static final Logger logger = Logger.getLogger(TimerWheel.class.getName());
+
+    private static final TimerWheel SHARED = new TimerWheel(10, TimeUnit.MILLISECONDS, 512);
+
+    private final long tickNanos;
+    private final Timeout[] wheel;
+    private final int mask;
+
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<Timeout>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // guarded by this
+    private Thread worker;
+
+    // only accessed by the worker
+    private long startTime;
+    private long tick;
+
+    /**
+     * @param tickDuration the resolution of the timer.
+     * @param unit the unit of tickDuration.
+     * @param ticksPerWheel the number of buckets, rounded up to a power of two.
+     */
+    public TimerWheel(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        int size = Integer.highestOneBit(Math.max(ticksPerWheel, 1) - 1) << 1;
+        this.tickNanos = Math.max(unit.toNanos(tickDuration), 1);
+        this.wheel = new Timeout[Math.max(size, 1)];
+        this.mask = this.wheel.length - 1;
+    }
+
+    /**
+     * @return the timer shared by all the sockets, with a resolution of 10 ms.
+     */
+    public static TimerWheel shared() {
+        return SHARED;
+    }
+
+    /**
+     * Schedules a task. Thread-safe.
+     *
+     * @param task the task, run on the timer thread.
+     * @param delay the delay after which the task is run.
+     * @param unit the unit of delay.
+     * @return a handle to postpone or cancel the task.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(delay));
+        this.pending.incrementAndGet();
+        this.added.offer(timeout);
+        this.start();
+        return timeout;
+    }
+
+    private synchronized void start() {
+        if (this.worker != null) {
+            return;
+        }
+
+        this.worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TimerWheel.this.run();
+            }
+        }, "engine.io-client.timer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    private void run() {
+        this.startTime = System.nanoTime();
+        this.tick = 0;
+
+        while (true) {
+            long now = this.waitForNextTick();
+            this.transferAdded();
+            this.expire(this.wheel[(int) (this.tick & this.mask)], now);
+            this.tick++;
+
+            if (this.pending.get() == 0) {
+                synchronized (this) {
+                    if (this.pending.get() == 0) {
+                        this.worker = null;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private long waitForNextTick() {
+        long deadline = this.startTime + (this.tick + 1) * this.tickNanos;
+        while (true) {
+            long now = System.nanoTime();
+            long sleepNanos = deadline - now;
+            if (sleepNanos <= 0) {
+                return now;
+            }
+            try {
+                Thread.sleep(sleepNanos / 1000000, (int) (sleepNanos % 1000000));
+            } catch (InterruptedException e) {
+                // keep ticking, the timer is never interrupted on purpose
+            }
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = this.added.poll()) != null) {
+            if (timeout.cancelled) {
+                this.pending.decrementAndGet();
+                continue;
+            }
+            // the current bucket is expired right after the transfer
+            this.place(timeout, timeout.deadline, this.tick);
+        }
+    }
+
+    /**
+     * @param fromTick the first tick at which the timeout can be expired.
+     */
+    private void place(Timeout timeout, long deadline, long fromTick) {
+        // the tick at the end of which the deadline is passed, never in the past
+        long ticks = Math.max((deadline - this.startTime + this.tickNanos - 1) / this.tickNanos - 1, fromTick);
+        timeout.rounds = (ticks - fromTick) / this.wheel.length;
+
+        int index = (int) (ticks & this.mask);
+        timeout.prev = null;
+        timeout.next = this.wheel[index];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        this.wheel[index] = timeout;
+        timeout.bucket = index;
+    }
+
+    private void remove(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            this.wheel[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    private void expire(Timeout timeout, long now) {
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.cancelled) {
+                this.remove(timeout);
+                this.pending.decrementAndGet();
+            } else if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                long deadline = timeout.deadline;
+                this.remove(timeout);
+                if (deadline - now > 0) {
+                    // postponed since it was placed
+                    this.place(timeout, deadline, this.tick + 1);
+                } else {
+                    this.pending.decrementAndGet();
+                    timeout.expired = true;
+                    try {
+                        timeout.task.run();
+                    } catch (Throwable t) {
+                        logger.log(Level.SEVERE, "Timer task threw exception", t);
+                    }
+                }
+            }
+            timeout = next;
+        }
+    }
+
+
+    public static final class Timeout {
+
+        private final Runnable task;
+
+        private volatile long deadline;
+        private volatile boolean cancelled;
+        private volatile boolean expired;
+
+        // only accessed by the worker
+        private Timeout prev;
+        private Timeout next;
+        private int bucket;
+        private long rounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Moves the deadline to the given delay from now, without allocating. Meant to postpone the
+         * task: a deadline earlier than the current one is only noticed when the current one is reached.
+         *
+         * @param delay the new delay.
+         * @param unit the unit of delay.
+         * @return false if the task has already run or has been cancelled.
+         */
+        public boolean postpone(long delay, TimeUnit unit) {
+            this.deadline = System.nanoTime() + unit.toNanos(delay);
+            return !this.expired && !this.cancelled;
+        }
+
+        /**
+         * Cancels the task. It is removed from the timer the next time its bucket is reached.
+         */
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        public boolean isExpired() {
+            return this.expired;
+        }
+    }
+}
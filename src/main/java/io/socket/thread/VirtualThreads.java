@@ -0,0 +1,72 @@
+package io.socket.thread;
+
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Access to the virtual threads of JDK 21+, looked up at runtime since the library targets older
+ * JDKs. A shared pool of platform daemon threads is used instead when virtual threads are not available.
+ */
+public final class VirtualThreads {
+
+    private static final Logger logger = Logger.getLogger(VirtualThreads.class.getName());
+
+    private static final String NAME_PREFIX = "engine.io-client-listener-";
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = lookupFactory();
+
+    private static final ThreadFactory PLATFORM_THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, NAME_PREFIX + this.counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private static final Executor EXECUTOR = VIRTUAL_THREAD_FACTORY != null ? new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            VIRTUAL_THREAD_FACTORY.newThread(task).start();
+        }
+    } : Executors.newCachedThreadPool(PLATFORM_THREAD_FACTORY);
+
+    private VirtualThreads() {}
+
+    private static ThreadFactory lookupFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, NAME_PREFIX, 0L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Exception e) {
+            logger.log(Level.FINE, "virtual threads are not available", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the JDK provides virtual threads.
+     */
+    public static boolean isSupported() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    /**
+     * @return an executor starting a virtual thread for each task or, if virtual threads are not supported,
+     * a cached pool of platform daemon threads shared by all the sockets.
+     */
+    public static Executor executor() {
+        return EXECUTOR;
+    }
+}
@@ -2,10 +2,16 @@ package io.socket.engineio.client;
 
 import io.socket.emitter.Emitter;
 import io.socket.engineio.client.transports.Polling;
+import io.socket.engineio.parser.EncodedPacket;
+import io.socket.engineio.parser.Packet;
+import io.socket.engineio.parser.Parser;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -86,4 +92,90 @@ public class BinaryPollingTest extends Connection {
         assertThat((String)values.take(), is("cash money €€€"));
         socket.close();
     }
+
+    @Test(timeout = TIMEOUT)
+    public void receiveBinaryDataAsByteBuffer() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        final byte[] binaryData = new byte[5];
+        for (int i = 0; i < binaryData.length; i++) {
+            binaryData[i] = (byte)i;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(binaryData.length);
+        buffer.put(binaryData).flip();
+        Socket.Options opts = new Socket.Options();
+        opts.port = PORT;
+        opts.transports = new String[] {Polling.NAME};
+        opts.binaryAsByteBuffer = true;
+
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                socket.send(buffer);
+                socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+                    @Override
+                    public void call(Object... args) {
+                        if ("hi".equals(args[0])) return;
+
+                        values.offer(args[0]);
+                    }
+                });
+            }
+        });
+        socket.open();
+
+        ByteBuffer received = (ByteBuffer)values.take();
+        assertThat(received.isReadOnly(), is(true));
+        assertThat(received, is(ByteBuffer.wrap(binaryData)));
+        assertThat(buffer.remaining(), is(binaryData.length));
+        socket.close();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void receiveEncodedPacketsOnSeveralSockets() throws InterruptedException {
+        final byte[] binaryData = new byte[5];
+        for (int i = 0; i < binaryData.length; i++) {
+            binaryData[i] = (byte)i;
+        }
+        final EncodedPacket binaryPacket = Parser.encodePacket(new Packet<byte[]>(Packet.MESSAGE, binaryData));
+        final EncodedPacket textPacket = Parser.encodePacket(new Packet<String>(Packet.MESSAGE, "cash money €€€"));
+
+        final Socket[] sockets = new Socket[2];
+        final List<BlockingQueue<Object>> values = new ArrayList<BlockingQueue<Object>>();
+        for (int i = 0; i < sockets.length; i++) {
+            final BlockingQueue<Object> socketValues = new LinkedBlockingQueue<Object>();
+            values.add(socketValues);
+
+            Socket.Options opts = new Socket.Options();
+            opts.port = PORT;
+            opts.transports = new String[] {Polling.NAME};
+
+            final Socket socket = sockets[i] = new Socket(opts);
+            socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+                @Override
+                public void call(Object... args) {
+                    socket.send(binaryPacket);
+                    socket.send(textPacket);
+                    socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+                        @Override
+                        public void call(Object... args) {
+                            if ("hi".equals(args[0])) return;
+
+                            socketValues.offer(args[0]);
+                        }
+                    });
+                }
+            });
+            socket.open();
+        }
+
+        for (BlockingQueue<Object> socketValues : values) {
+            assertThat((byte[])socketValues.take(), is(binaryData));
+            assertThat((String)socketValues.take(), is("cash money €€€"));
+        }
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
 }
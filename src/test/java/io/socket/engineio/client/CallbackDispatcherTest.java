@@ -0,0 +1,197 @@
+package io.socket.engineio.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class CallbackDispatcherTest {
+
+    // runs the tasks when asked to, like a busy executor
+    private static class ManualExecutor implements Executor {
+        final Queue<Runnable> tasks = new LinkedList<Runnable>();
+
+        @Override
+        public void execute(Runnable task) {
+            this.tasks.offer(task);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static Runnable add(final List<String> values, final String value) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                values.add(value);
+            }
+        };
+    }
+
+    @Test
+    public void runInOrder() {
+        ManualExecutor executor = new ManualExecutor();
+        CallbackDispatcher dispatcher = new CallbackDispatcher(executor, 100, Socket.OverflowPolicy.CLOSE);
+        List<String> values = new ArrayList<String>();
+
+        dispatcher.execute(add(values, "open"));
+        for (int i = 0; i < 100; i++) {
+            assertThat(dispatcher.executeMessage(add(values, String.valueOf(i))), is(true));
+        }
+        dispatcher.execute(add(values, "close"));
+        assertThat(dispatcher.pendingMessages(), is(100));
+        executor.runAll();
+
+        assertThat(values.size(), is(102));
+        assertThat(values.get(0), is("open"));
+        for (int i = 0; i < 100; i++) {
+            assertThat(values.get(i + 1), is(String.valueOf(i)));
+        }
+        assertThat(values.get(101), is("close"));
+        assertThat(dispatcher.pendingMessages(), is(0));
+    }
+
+    @Test
+    public void runInOrderWithoutLimit() {
+        ManualExecutor executor = new ManualExecutor();
+        CallbackDispatcher dispatcher = new CallbackDispatcher(executor, 0, Socket.OverflowPolicy.CLOSE);
+        List<String> values = new ArrayList<String>();
+
+        dispatcher.execute(add(values, "open"));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(dispatcher.executeMessage(add(values, String.valueOf(i))), is(true));
+        }
+        // not tracked
+        assertThat(dispatcher.pendingMessages(), is(0));
+        executor.runAll();
+
+        assertThat(values.size(), is(1001));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(values.get(i + 1), is(String.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void dropNewest() {
+        ManualExecutor executor = new ManualExecutor();
+        CallbackDispatcher dispatcher = new CallbackDispatcher(executor, 2, Socket.OverflowPolicy.DROP_NEWEST);
+        List<String> values = new ArrayList<String>();
+
+        dispatcher.execute(add(values, "open"));
+        for (int i = 0; i < 4; i++) {
+            assertThat(dispatcher.executeMessage(add(values, String.valueOf(i))), is(true));
+        }
+        dispatcher.execute(add(values, "close"));
+        executor.runAll();
+
+        assertThat(values, is(Arrays.asList("open", "0", "1", "close")));
+    }
+
+    @Test
+    public void dropOldest() {
+        ManualExecutor executor = new ManualExecutor();
+        CallbackDispatcher dispatcher = new CallbackDispatcher(executor, 2, Socket.OverflowPolicy.DROP_OLDEST);
+        List<String> values = new ArrayList<String>();
+
+        dispatcher.execute(add(values, "open"));
+        for (int i = 0; i < 4; i++) {
+            assertThat(dispatcher.executeMessage(add(values, String.valueOf(i))), is(true));
+        }
+        dispatcher.execute(add(values, "close"));
+        assertThat(dispatcher.pendingMessages(), is(2));
+        executor.runAll();
+
+        assertThat(values, is(Arrays.asList("open", "2", "3", "close")));
+        assertThat(dispatcher.pendingMessages(), is(0));
+    }
+
+    @Test
+    public void rejectWhenClosingOnOverflow() {
+        ManualExecutor executor = new ManualExecutor();
+        CallbackDispatcher dispatcher = new CallbackDispatcher(executor, 1, Socket.OverflowPolicy.CLOSE);
+        List<String> values = new ArrayList<String>();
+
+        assertThat(dispatcher.executeMessage(add(values, "0")), is(true));
+        assertThat(dispatcher.executeMessage(add(values, "1")), is(false));
+        executor.runAll();
+        assertThat(dispatcher.executeMessage(add(values, "2")), is(true));
+        executor.runAll();
+
+        assertThat(values, is(Arrays.asList("0", "2")));
+    }
+
+    @Test
+    public void boundExecutorBacklog() throws InterruptedException {
+        final ExecutorService service = Executors.newSingleThreadExecutor();
+        try {
+            final AtomicInteger submitted = new AtomicInteger();
+            final Executor executor = new Executor() {
+                @Override
+                public void execute(Runnable task) {
+                    submitted.incrementAndGet();
+                    service.execute(task);
+                }
+            };
+            CallbackDispatcher dispatcher = new CallbackDispatcher(executor, 10, Socket.OverflowPolicy.DROP_OLDEST);
+            final List<String> values = Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch blocked = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+
+            dispatcher.executeMessage(new Runnable() {
+                @Override
+                public void run() {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            blocked.await();
+            for (int i = 0; i < 10000; i++) {
+                assertThat(dispatcher.executeMessage(add(values, String.valueOf(i))), is(true));
+            }
+
+            // a single task of the executor runs all the messages
+            assertThat(submitted.get(), is(1));
+            assertThat(dispatcher.pendingMessages(), is(10));
+            release.countDown();
+
+            final CountDownLatch done = new CountDownLatch(1);
+            dispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+            assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+            assertThat(values.size(), is(10));
+            assertThat(values.get(0), is("9990"));
+            assertThat(values.get(9), is("9999"));
+        } finally {
+            service.shutdown();
+        }
+    }
+}
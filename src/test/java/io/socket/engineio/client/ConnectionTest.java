@@ -1,10 +1,18 @@
 package io.socket.engineio.client;
 
 import io.socket.emitter.Emitter;
+import io.socket.engineio.client.transports.Polling;
+import io.socket.engineio.client.transports.WebSocket;
+import io.socket.engineio.parser.Packet;
+import io.socket.engineio.parser.StringSlice;
+import io.socket.thread.EventLoop;
+import io.socket.thread.EventLoopGroup;
+import okhttp3.OkHttpClient;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.BlockingQueue;
@@ -40,6 +48,283 @@ public class ConnectionTest extends Connection {
         assertThat((String)values.take(), is("hi"));
     }
 
+    @Test(timeout = TIMEOUT)
+    public void runSocketsOnTheLoopsOfAGroup() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        Socket.Options opts = createOptions();
+        opts.eventLoopGroup = new EventLoopGroup(2);
+        final Socket first = new Socket(opts);
+        final Socket second = new Socket(opts);
+        assertThat(first.eventLoop() == second.eventLoop(), is(false));
+
+        for (final Socket socket : new Socket[] {first, second}) {
+            socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+                @Override
+                public void call(Object... args) {
+                    values.offer(socket.eventLoop().isCurrent());
+                    values.offer(EventLoop.defaultLoop().isCurrent());
+                    socket.close();
+                }
+            });
+            socket.open();
+        }
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(values.take(), is((Object) true));
+            assertThat(values.take(), is((Object) false));
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void callBlockingListenersOffTheEventLoop() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        Socket.Options opts = createOptions();
+        opts.virtualThreadListeners = true;
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                socket.send("1");
+                socket.send("2");
+            }
+        });
+        socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer(socket.eventLoop().isCurrent());
+                try {
+                    // a blocking listener
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                values.offer(args[0]);
+                if ("2".equals(args[0])) {
+                    socket.close();
+                }
+            }
+        });
+        socket.on(Socket.EVENT_CLOSE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer(args[0]);
+            }
+        });
+        socket.open();
+
+        for (String expected : new String[] {"hi", "1", "2"}) {
+            assertThat(values.take(), is((Object) false));
+            assertThat(values.take(), is((Object) expected));
+        }
+        assertThat(values.take(), is((Object) "forced close"));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void receiveMessageBatches() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        socket = new Socket(createOptions());
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                socket.send("1");
+                socket.send("2");
+                socket.send("3");
+            }
+        });
+        socket.on(Socket.EVENT_MESSAGE_BATCH, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                for (Object message : (List<?>) args[0]) {
+                    values.offer(message);
+                }
+            }
+        });
+        socket.open();
+
+        for (String expected : new String[] {"hi", "1", "2", "3"}) {
+            assertThat(values.take(), is((Object) expected));
+        }
+        socket.close();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void emitFlushBeforeDrainOverWebSocket() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        Socket.Options opts = createOptions();
+        opts.transports = new String[] {WebSocket.NAME};
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                socket.on(Socket.EVENT_FLUSH, new Emitter.Listener() {
+                    @Override
+                    public void call(Object... args) {
+                        values.offer("flush " + socket.writeBuffer.size());
+                    }
+                });
+                socket.on(Socket.EVENT_DRAIN, new Emitter.Listener() {
+                    @Override
+                    public void call(Object... args) {
+                        values.offer("drain " + socket.writeBuffer.size());
+                        socket.close();
+                    }
+                });
+                socket.send("1");
+            }
+        });
+        socket.open();
+
+        assertThat(values.take(), is((Object) "flush 1"));
+        assertThat(values.take(), is((Object) "drain 0"));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void waitForWebSocketQueueBelowDrainThreshold() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+        final int count = 20;
+
+        Socket.Options opts = createOptions();
+        opts.transports = new String[] {WebSocket.NAME};
+        // any queued data holds the next write back
+        opts.webSocketDrainThreshold = 1;
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                for (int i = 0; i < count; i++) {
+                    socket.send(String.valueOf(i));
+                }
+            }
+        });
+        socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                if ("hi".equals(args[0])) return;
+                values.offer(args[0]);
+            }
+        });
+        socket.open();
+
+        for (int i = 0; i < count; i++) {
+            assertThat(values.take(), is((Object) String.valueOf(i)));
+        }
+        socket.close();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void writeDirectlyOverOpenWebSocket() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+        final int count = 100;
+
+        Socket.Options opts = createOptions();
+        opts.transports = new String[] {WebSocket.NAME};
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_FLUSH, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer("flush");
+            }
+        });
+        socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer(args[0]);
+            }
+        });
+        socket.open();
+        assertThat(values.take(), is((Object) "hi"));
+
+        // nothing is waiting, so the message does not go through the write buffer
+        socket.send("direct");
+        assertThat(values.take(), is((Object) "direct"));
+
+        for (int i = 0; i < count; i++) {
+            socket.send(String.valueOf(i));
+        }
+        for (int i = 0; i < count; i++) {
+            Object value;
+            do {
+                value = values.take();
+            } while ("flush".equals(value));
+            assertThat(value, is((Object) String.valueOf(i)));
+        }
+        socket.close();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void runManyPollingSocketsAtOnce() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+        final int count = 8;
+        long calls = PollingDispatcher.calls();
+
+        Socket.Options opts = createOptions();
+        opts.transports = new String[] {Polling.NAME};
+        final Socket[] sockets = new Socket[count];
+        for (int i = 0; i < count; i++) {
+            final Socket socket = sockets[i] = new Socket(opts);
+            final String message = String.valueOf(i);
+            socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+                @Override
+                public void call(Object... args) {
+                    socket.send(message);
+                }
+            });
+            socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+                @Override
+                public void call(Object... args) {
+                    if (message.equals(args[0])) {
+                        values.offer(args[0]);
+                    }
+                }
+            });
+            socket.open();
+        }
+
+        // more sockets than the default limit of requests per host, each with a long-poll and a write
+        for (int i = 0; i < count; i++) {
+            values.take();
+        }
+        assertThat(PollingDispatcher.sockets() >= count, is(true));
+        assertThat(PollingDispatcher.calls() > calls, is(true));
+
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void countWebSocketsOfTheDefaultClient() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+        int sockets = PollingDispatcher.sockets();
+
+        Socket.Options opts = createOptions();
+        opts.transports = new String[] {WebSocket.NAME};
+        opts.callFactory = new OkHttpClient();
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer(PollingDispatcher.sockets());
+                socket.close();
+            }
+        });
+        socket.on(Socket.EVENT_CLOSE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer(PollingDispatcher.sockets());
+            }
+        });
+        socket.open();
+
+        // the WebSocket holds a thread of the default dispatcher
+        assertThat(values.take(), is((Object) (sockets + 1)));
+        assertThat(values.take(), is((Object) sockets));
+    }
+
     @Test(timeout = TIMEOUT)
     public void receiveMultibyteUTF8StringsWithPolling() throws InterruptedException {
         final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
@@ -258,4 +543,183 @@ public class ConnectionTest extends Connection {
         socket.open();
         assertThat(values.take(), is("end"));
     }
+
+    @Test(timeout = TIMEOUT)
+    public void receiveTextAsCharSequence() throws InterruptedException {
+        for (String transport : new String[] {Polling.NAME, WebSocket.NAME}) {
+            final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+            Socket.Options opts = createOptions();
+            opts.transports = new String[] {transport};
+            opts.textAsCharSequence = true;
+            socket = new Socket(opts);
+            socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+                @Override
+                public void call(Object... args) {
+                    socket.send("cash money €€€");
+                    socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+                        @Override
+                        public void call(Object... args) {
+                            if ("hi".equals(args[0].toString())) return;
+                            values.offer(args[0]);
+                            socket.close();
+                        }
+                    });
+                }
+            });
+            socket.open();
+
+            StringSlice message = (StringSlice)values.take();
+            assertThat(message.contentEquals("cash money €€€"), is(true));
+            assertThat(message.toString(), is("cash money €€€"));
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void rejectMessagesWhenWriteBufferIsFull() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        Socket.Options opts = createOptions();
+        opts.transports = new String[] {Polling.NAME};
+        opts.writeBufferMaxPackets = 2;
+        opts.writeBufferHighWaterMark = 6;
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                // the first message is in flight and the second one waits for it: both take room until drained
+                values.offer(socket.trySend("foo"));
+                values.offer(socket.trySend("bar"));
+                values.offer(socket.trySend("baz"));
+                socket.send("qux");
+            }
+        }).on(Socket.EVENT_WRITE_BUFFER_HIGH, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer("high " + args[0]);
+            }
+        }).on(Socket.EVENT_WRITE_BUFFER_LOW, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer("low " + args[0]);
+                socket.close();
+            }
+        }).on(Socket.EVENT_ERROR, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer(((Exception) args[0]).getMessage());
+            }
+        });
+        socket.open();
+
+        assertThat(values.take(), is((Object) true));
+        assertThat(values.take(), is((Object) "high 6"));
+        assertThat(values.take(), is((Object) true));
+        assertThat(values.take(), is((Object) false));
+        assertThat(values.take(), is((Object) "write buffer full"));
+        assertThat(values.take(), is((Object) "low 0"));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void coalesceMessagesWithPollingLinger() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+        final int[] flushes = new int[] {0};
+
+        Socket.Options opts = createOptions();
+        opts.transports = new String[] {Polling.NAME};
+        opts.pollingLinger = 50;
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                socket.send("a");
+                socket.send("b");
+                socket.send("c");
+                socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+                    @Override
+                    public void call(Object... args) {
+                        if ("hi".equals(args[0])) return;
+                        values.offer(args[0]);
+                    }
+                });
+            }
+        }).on(Socket.EVENT_FLUSH, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                flushes[0]++;
+            }
+        });
+        socket.open();
+
+        assertThat(values.take(), is((Object) "a"));
+        assertThat(values.take(), is((Object) "b"));
+        assertThat(values.take(), is((Object) "c"));
+        assertThat(flushes[0], is(1));
+        socket.close();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void flushPollingBatchBeforeLinger() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        Socket.Options opts = createOptions();
+        opts.transports = new String[] {Polling.NAME};
+        opts.pollingLinger = 60 * 1000;
+        opts.pollingBatchSize = 4;
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                socket.send("ab");
+                socket.send("cd");
+                socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+                    @Override
+                    public void call(Object... args) {
+                        if ("hi".equals(args[0])) return;
+                        values.offer(args[0]);
+                    }
+                });
+            }
+        });
+        socket.open();
+
+        assertThat(values.take(), is((Object) "ab"));
+        assertThat(values.take(), is((Object) "cd"));
+        socket.close();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void flushPongAheadOfHeldBackMessages() throws InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        Socket.Options opts = createOptions();
+        opts.transports = new String[] {Polling.NAME};
+        opts.pollingLinger = 60 * 1000;
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_PING, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                // held back by the linger window until the pong is flushed
+                socket.send("after pong");
+            }
+        }).on(Socket.EVENT_CONTROL_PACKET_FLUSH, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer(((Packet) args[0]).type);
+                values.offer((Long) args[1] >= 0);
+            }
+        }).on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                if ("hi".equals(args[0])) return;
+                values.offer(args[0]);
+                socket.close();
+            }
+        });
+        socket.open();
+
+        assertThat(values.take(), is((Object) Packet.PONG));
+        assertThat(values.take(), is((Object) true));
+        assertThat(values.take(), is((Object) "after pong"));
+    }
 }
@@ -4,10 +4,14 @@ import io.socket.emitter.Emitter;
 import io.socket.engineio.client.transports.Polling;
 import io.socket.engineio.client.transports.WebSocket;
 import io.socket.thread.EventThread;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Arrays;
 import java.util.Collections;
@@ -133,6 +137,225 @@ public class ServerConnectionTest extends Connection {
         socket.close();
     }
 
+    @Test(timeout = TIMEOUT)
+    public void fastUpgrade() throws URISyntaxException, InterruptedException {
+        final BlockingQueue<Object> messages = new LinkedBlockingQueue<Object>();
+        final BlockingQueue<Object> upgrades = new LinkedBlockingQueue<Object>();
+        final int count = 40;
+
+        Socket.Options opts = createOptions();
+        opts.fastUpgrade = true;
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                for (int i = 0; i < count / 2; i++) {
+                    socket.send(String.valueOf(i));
+                }
+            }
+        });
+        socket.on(Socket.EVENT_UPGRADING, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                for (int i = count / 2; i < count; i++) {
+                    socket.send(String.valueOf(i));
+                }
+            }
+        });
+        socket.on(Socket.EVENT_UPGRADE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                upgrades.offer(((Transport) args[0]).name);
+            }
+        });
+        socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                if ("hi".equals(args[0])) return;
+                messages.offer(args[0]);
+            }
+        });
+        socket.open();
+
+        assertThat(upgrades.take(), is((Object) WebSocket.NAME));
+        // the echoes come over both transports, in order
+        for (int i = 0; i < count; i++) {
+            assertThat(messages.take(), is((Object) String.valueOf(i)));
+        }
+        socket.close();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void writeOverPollingWhileUpgrading() throws URISyntaxException, InterruptedException {
+        final BlockingQueue<Object> events = new LinkedBlockingQueue<Object>();
+
+        socket = new Socket(createOptions());
+        socket.on(Socket.EVENT_UPGRADING, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                socket.send("upgrading");
+            }
+        });
+        socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                if ("hi".equals(args[0])) return;
+                events.offer(args[0]);
+            }
+        });
+        socket.on(Socket.EVENT_UPGRADE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                events.offer(((Transport) args[0]).name);
+            }
+        });
+        socket.on(Socket.EVENT_UPGRADE_PAUSE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                events.offer(args[0]);
+            }
+        });
+        socket.open();
+
+        // sent and echoed over polling, while the server still holds the poll
+        assertThat(events.take(), is((Object) "upgrading"));
+        assertThat(events.take(), is((Object) WebSocket.NAME));
+        assertThat((Long) events.take() >= 0, is(true));
+        socket.close();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void raceTransports() throws URISyntaxException, InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        Socket.Options opts = createOptions();
+        opts.raceTransports = true;
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer(socket.transport.name);
+                socket.send("race");
+            }
+        });
+        socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                if ("hi".equals(args[0])) return;
+                values.offer(args[0]);
+            }
+        });
+        socket.open();
+
+        // the WebSocket handshake completes within its head start
+        assertThat(values.take(), is((Object) WebSocket.NAME));
+        assertThat(values.take(), is((Object) "race"));
+        socket.close();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void raceTransportsFallBackToPolling() throws URISyntaxException, InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        Socket.Options opts = createOptions();
+        opts.raceTransports = true;
+        opts.raceHeadStart = 60000;
+        opts.upgrade = false;
+        opts.webSocketFactory = new OkHttpClient.Builder()
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        throw new IOException("websocket blocked");
+                    }
+                })
+                .build();
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer(socket.transport.name);
+                socket.send("race");
+            }
+        });
+        socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                if ("hi".equals(args[0])) return;
+                values.offer(args[0]);
+            }
+        });
+        socket.open();
+
+        // polling is started as soon as the WebSocket fails, not after the head start
+        assertThat(values.take(), is((Object) Polling.NAME));
+        assertThat(values.take(), is((Object) "race"));
+        socket.close();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void closePollingSessionCleanly() throws URISyntaxException, InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        Socket.Options opts = createOptions();
+        opts.transports = new String[] {Polling.NAME};
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer(socket.id());
+                socket.close();
+            }
+        });
+        socket.open();
+
+        // closed by the close packet, not by the pending poll being dropped
+        assertThat(closeReason((String) values.take()), is("transport close"));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void raceTransportsCloseTheLoser() throws URISyntaxException, InterruptedException {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+        final BlockingQueue<Transport> pollings = new LinkedBlockingQueue<Transport>();
+
+        Socket.Options opts = createOptions();
+        opts.raceTransports = true;
+        opts.raceHeadStart = 0;
+        opts.upgrade = false;
+        // both handshakes complete, the one over polling last
+        opts.webSocketFactory = delayedClient(100);
+        opts.callFactory = delayedClient(300);
+        socket = new Socket(opts);
+        socket.on(Socket.EVENT_TRANSPORT, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                Transport transport = (Transport) args[0];
+                if (Polling.NAME.equals(transport.name)) {
+                    pollings.offer(transport);
+                }
+            }
+        });
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer(socket.transport.name);
+                values.offer(socket.id());
+            }
+        });
+        socket.open();
+
+        Transport polling = pollings.take();
+        assertThat(values.take(), is((Object) WebSocket.NAME));
+        Object id = values.take();
+        String sid;
+        while ((sid = polling.query.get("sid")) == null) {
+            Thread.sleep(10);
+        }
+        assertThat(sid, is(not(id)));
+        // closed by the close packet of the loser, not by a ping timeout
+        assertThat(closeReason(sid), is("transport close"));
+        socket.close();
+    }
+
     @Test(timeout = TIMEOUT)
     public void pollingHeaders() throws URISyntaxException, InterruptedException {
         final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
@@ -342,4 +565,48 @@ public class ServerConnectionTest extends Connection {
         assertThat((String) values.take(), is(Polling.NAME));
         assertThat((String)values.take(), is(not(WebSocket.NAME)));
     }
+
+    /**
+     * Asks the server how a session was closed, once it is.
+     */
+    private String closeReason(String sid) throws InterruptedException {
+        final BlockingQueue<String> replies = new LinkedBlockingQueue<String>();
+        final Socket socket = new Socket(createOptions());
+        socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                if ("hi".equals(args[0])) return;
+                replies.offer((String) args[0]);
+            }
+        });
+        socket.open();
+        try {
+            while (true) {
+                socket.send("closeReason " + sid);
+                String reason = replies.take();
+                if (!"open".equals(reason)) {
+                    return reason;
+                }
+                Thread.sleep(50);
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    private OkHttpClient delayedClient(final long delay) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        try {
+                            Thread.sleep(delay);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .build();
+    }
 }
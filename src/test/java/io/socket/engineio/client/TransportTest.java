@@ -1,12 +1,21 @@
 package io.socket.engineio.client;
 
+import io.socket.emitter.Emitter;
 import io.socket.engineio.client.transports.PollingXHR;
 import io.socket.engineio.client.transports.WebSocket;
+import io.socket.engineio.parser.Packet;
+import io.socket.thread.EventLoop;
+import okhttp3.OkHttpClient;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
@@ -171,6 +180,160 @@ public class TransportTest {
         assertThat(ws.uri(), containsString("ws://[::1]:8080/engine.io"));
     }
 
+    @Test
+    public void deliverReceivedPacketsInBatches() {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Transport.Options opt = new Transport.Options();
+        opt.eventLoop = EventLoop.wrap(new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        });
+        WS ws = new WS(opt);
+
+        final List<Object> packets = new ArrayList<Object>();
+        final List<Object> batches = new ArrayList<Object>();
+        ws.on(Transport.EVENT_PACKET, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                packets.add(((Packet) args[0]).data);
+            }
+        });
+        ws.on(Transport.EVENT_PACKETS, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                batches.add(((Packet[]) args[0]).length);
+            }
+        });
+
+        for (int i = 0; i < 300; i++) {
+            ws.receive(new Packet<String>(Packet.MESSAGE, String.valueOf(i)));
+        }
+        assertThat(tasks.size(), is(1));
+
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).run();
+        }
+
+        assertThat(tasks.size(), is(2));
+        assertThat(packets.size(), is(300));
+        for (int i = 0; i < 300; i++) {
+            assertThat(packets.get(i), is((Object) String.valueOf(i)));
+        }
+        assertThat(batches, is(Arrays.<Object>asList(256, 44)));
+
+        ws.receive(new Packet<String>(Packet.MESSAGE, "next"));
+        assertThat(tasks.size(), is(3));
+    }
+
+    @Test
+    public void batchPacketsOnlyForBatchListeners() {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Transport.Options opt = new Transport.Options();
+        opt.eventLoop = EventLoop.wrap(new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        });
+        Socket socket = new Socket();
+        opt.socket = socket;
+        WS ws = new WS(opt);
+
+        final List<Object> batches = new ArrayList<Object>();
+        ws.on(Transport.EVENT_PACKETS, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                batches.add(((Packet[]) args[0]).length);
+            }
+        });
+
+        ws.receive(new Packet<String>(Packet.MESSAGE, "0"));
+        ws.receive(new Packet<String>(Packet.MESSAGE, "1"));
+        tasks.remove(0).run();
+        assertThat(batches.isEmpty(), is(true));
+
+        socket.on(Socket.EVENT_MESSAGE_BATCH, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {}
+        });
+        ws.receive(new Packet<String>(Packet.MESSAGE, "2"));
+        ws.receive(new Packet<String>(Packet.MESSAGE, "3"));
+        tasks.remove(0).run();
+        assertThat(batches, is(Arrays.<Object>asList(2)));
+    }
+
+    @Test
+    public void holdReceivedPackets() {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Transport.Options opt = new Transport.Options();
+        opt.eventLoop = EventLoop.wrap(new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        });
+        WS ws = new WS(opt);
+
+        final List<Object> packets = new ArrayList<Object>();
+        ws.on(Transport.EVENT_PACKET, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                packets.add(((Packet) args[0]).data);
+            }
+        });
+
+        ((Transport) ws).holdInbound();
+        ws.receive(new Packet<String>(Packet.MESSAGE, "1"));
+        ws.receive(new Packet<String>(Packet.MESSAGE, "2"));
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).run();
+        }
+        assertThat(packets.size(), is(0));
+
+        ((Transport) ws).releaseInbound();
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).run();
+        }
+        assertThat(packets, is(Arrays.<Object>asList("1", "2")));
+    }
+
+    @Test(timeout = 10000)
+    public void ignoreCancelledRequest() throws Exception {
+        // accepts connections but never answers
+        ServerSocket server = new ServerSocket(0);
+        OkHttpClient client = new OkHttpClient();
+        try {
+            PollingXHR.Request.Options opts = new PollingXHR.Request.Options();
+            opts.uri = "http://localhost:" + server.getLocalPort() + "/engine.io/";
+            opts.callFactory = client;
+            PollingXHR.Request request = new PollingXHR.Request(opts);
+
+            final List<Object> events = new ArrayList<Object>();
+            Emitter.Listener listener = new Emitter.Listener() {
+                @Override
+                public void call(Object... args) {
+                    events.add(args.length > 0 ? args[0] : null);
+                }
+            };
+            request.on(PollingXHR.Request.EVENT_SUCCESS, listener);
+            request.on(PollingXHR.Request.EVENT_ERROR, listener);
+            request.create();
+
+            while (client.dispatcher().runningCallsCount() == 0) {
+                Thread.sleep(10);
+            }
+            request.cancel();
+            while (client.dispatcher().runningCallsCount() > 0) {
+                Thread.sleep(10);
+            }
+            assertThat(events.size(), is(0));
+        } finally {
+            server.close();
+        }
+    }
+
     class Polling extends PollingXHR {
 
         public Polling(Options opts) {
@@ -0,0 +1,91 @@
+package io.socket.engineio.client;
+
+import io.socket.engineio.parser.Packet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class WriteBufferTest {
+
+    @Test
+    public void keepOrderAcrossWrapAndGrowth() {
+        WriteBuffer buffer = new WriteBuffer(0, 0);
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < round * 7; i++) {
+                buffer.offer(new Packet<String>(Packet.MESSAGE, String.valueOf(next++)), -1);
+            }
+            Packet[] packets = buffer.toArray(null);
+            assertThat(packets.length, is(buffer.size()));
+            for (int i = 0; i < packets.length; i++) {
+                assertThat((String) packets[i].data, is(String.valueOf(expected + i)));
+            }
+            int removed = buffer.size() / 2 + 1;
+            buffer.remove(removed);
+            expected += Math.min(removed, packets.length);
+        }
+    }
+
+    @Test
+    public void reuseArrayOfSameLength() {
+        WriteBuffer buffer = new WriteBuffer(0, 0);
+        buffer.offer(new Packet<String>(Packet.MESSAGE, "a"), -1);
+        Packet[] reuse = new Packet[1];
+        assertThat(buffer.toArray(reuse), is(sameInstance(reuse)));
+        assertThat(buffer.toArray(new Packet[2]).length, is(1));
+    }
+
+    @Test
+    public void limitPackets() {
+        WriteBuffer buffer = new WriteBuffer(2, 0);
+        assertThat(buffer.tryReserve(10), is(true));
+        assertThat(buffer.tryReserve(10), is(true));
+        assertThat(buffer.tryReserve(0), is(false));
+        buffer.release(10);
+        assertThat(buffer.tryReserve(0), is(true));
+        assertThat(buffer.bytes(), is(10L));
+    }
+
+    @Test
+    public void limitBytes() {
+        WriteBuffer buffer = new WriteBuffer(0, 10);
+        assertThat(buffer.tryReserve(6), is(true));
+        assertThat(buffer.tryReserve(5), is(false));
+        assertThat(buffer.tryReserve(4), is(true));
+        assertThat(buffer.bytes(), is(10L));
+    }
+
+    @Test
+    public void releaseOnRemoveAndClear() {
+        WriteBuffer buffer = new WriteBuffer(1, 0);
+        assertThat(buffer.tryReserve(3), is(true));
+        buffer.offer(new Packet<String>(Packet.MESSAGE, "abc"), 3);
+        buffer.offer(new Packet<String>(Packet.PONG), -1);
+        assertThat(buffer.tryReserve(3), is(false));
+
+        buffer.remove(1);
+        assertThat(buffer.size(), is(1));
+        assertThat(buffer.bytes(), is(0L));
+        assertThat(buffer.tryReserve(3), is(true));
+        buffer.offer(new Packet<String>(Packet.MESSAGE, "abc"), 3);
+
+        buffer.clear();
+        assertThat(buffer.size(), is(0));
+        assertThat(buffer.bytes(), is(0L));
+    }
+
+    @Test
+    public void sizeOfPackets() {
+        assertThat(WriteBuffer.sizeOf(new Packet<String>(Packet.MESSAGE, "abc")), is(3));
+        assertThat(WriteBuffer.sizeOf(new Packet<byte[]>(Packet.MESSAGE, new byte[5])), is(5));
+        assertThat(WriteBuffer.sizeOf(new Packet<ByteBuffer>(Packet.MESSAGE, ByteBuffer.allocate(7))), is(7));
+        assertThat(WriteBuffer.sizeOf(new Packet<String>(Packet.MESSAGE)), is(0));
+    }
+}
@@ -1,9 +1,15 @@
 package io.socket.engineio.parser;
 
+import okio.Buffer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
 import static io.socket.engineio.parser.Parser.*;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
@@ -380,4 +386,232 @@ public class ParserTest {
             }
         });
     }
+
+    @Test
+    public void decodePayloadFromSource() throws IOException {
+        final List<Packet> packets = new ArrayList<Packet>();
+        final List<Integer> totals = new ArrayList<Integer>();
+        Buffer source = new Buffer().writeUtf8("4€€€\u001e2\u001e4hello");
+        decodePayload(source, new DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                packets.add(packet);
+                totals.add(total);
+                return true;
+            }
+        });
+        assertThat(packets.size(), is(3));
+        assertThat(packets.get(0).type, is(Packet.MESSAGE));
+        assertThat((String) packets.get(0).data, is("€€€"));
+        assertThat(packets.get(1).type, is(Packet.PING));
+        assertThat((String) packets.get(2).data, is("hello"));
+        assertThat(totals.get(0), is(-1));
+        assertThat(totals.get(2), is(3));
+    }
+
+    @Test
+    public void decodeMixedPayloadFromSource() throws IOException {
+        final byte[] firstBuffer = new byte[123];
+        for (int i = 0 ; i < firstBuffer.length; i++) {
+            firstBuffer[i] = (byte)i;
+        }
+        encodePayload(new Packet[]{
+            new Packet<byte[]>(Packet.MESSAGE, firstBuffer),
+            new Packet<String>(Packet.MESSAGE, "hello"),
+            new Packet<String>(Packet.CLOSE),
+            new Packet<String>(Packet.MESSAGE, "ignored"),
+        }, new EncodeCallback<String>() {
+            @Override
+            public void call(String encoded) {
+                final List<Packet> packets = new ArrayList<Packet>();
+                try {
+                    decodePayload(new Buffer().writeUtf8(encoded), new DecodePayloadCallback() {
+                        @Override
+                        public boolean call(Packet packet, int index, int total) {
+                            packets.add(packet);
+                            return !Packet.CLOSE.equals(packet.type);
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+                assertThat(packets.size(), is(3));
+                assertThat((byte[]) packets.get(0).data, is(firstBuffer));
+                assertThat((String) packets.get(1).data, is("hello"));
+                assertThat(packets.get(2).type, is(Packet.CLOSE));
+            }
+        });
+    }
+
+    @Test
+    public void decodeEmptyPayloadFromSource() throws IOException {
+        decodePayload(new Buffer(), new DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                assertThat(packet.type, is(Packet.ERROR));
+                assertThat(packet.data, is(ERROR_DATA));
+                return true;
+            }
+        });
+    }
+
+    @Test
+    public void encodePayloadIntoSink() throws IOException {
+        final byte[] binary = new byte[100];
+        for (int i = 0 ; i < binary.length; i++) {
+            binary[i] = (byte)i;
+        }
+        final Packet[] packets = new Packet[] {
+            new Packet<String>(Packet.MESSAGE, "€€€"),
+            new Packet<byte[]>(Packet.MESSAGE, binary),
+            new Packet(Packet.PONG),
+        };
+        final Buffer sink = new Buffer();
+        encodePayload(packets, sink);
+        encodePayload(packets, new EncodeCallback<String>() {
+            @Override
+            public void call(String data) {
+                assertThat(sink.readUtf8(), is(data));
+            }
+        });
+    }
+
+    @Test
+    public void decodePacketType() {
+        Packet<String> p = decodePacket("4hello");
+        assertThat(p.packetType(), is(PacketType.MESSAGE));
+        assertThat(p.type, is(Packet.MESSAGE));
+        p.type = Packet.PING;
+        assertThat(p.packetType(), is(PacketType.PING));
+        assertThat(decodePacket("6").packetType(), is(PacketType.NOOP));
+        assertThat(decodePacket("7").packetType(), is(PacketType.ERROR));
+    }
+
+    @Test
+    public void encodeByteBufferContents() throws IOException {
+        final byte[] data = new byte[42];
+        for (int i = 0 ; i < data.length; i++) {
+            data[i] = (byte)i;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+
+        Buffer sink = new Buffer();
+        encodePayload(new Packet[] {new Packet<ByteBuffer>(Packet.MESSAGE, buffer)}, sink);
+        assertThat(buffer.remaining(), is(data.length));
+
+        decodePayload(sink, new DecodePayloadCallback() {
+            @Override
+            public boolean call(Packet packet, int index, int total) {
+                assertThat(packet.type, is(Packet.MESSAGE));
+                assertThat((byte[])packet.data, is(data));
+                return true;
+            }
+        });
+    }
+
+    @Test
+    public void base64CodecMatchesBase64() throws IOException {
+        for (int len : new int[] {0, 1, 2, 3, 4, 5, 1000, 10000}) {
+            byte[] data = new byte[len];
+            for (int i = 0; i < len; i++) {
+                data[i] = (byte)(i * 31);
+            }
+            String encoded = Base64Codec.encodeToString(data, 0, len);
+            assertThat(encoded, is(Base64.encodeToString(data, Base64.NO_WRAP)));
+            assertThat(Base64Codec.decode(encoded, 0, encoded.length()), is(data));
+
+            Buffer sink = new Buffer();
+            Base64Codec.encode(ByteBuffer.wrap(data), sink);
+            assertThat(sink.readUtf8(), is(encoded));
+        }
+    }
+
+    @Test
+    public void base64CodecDecodesWrappedInput() {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte)i;
+        }
+        String encoded = Base64.encodeToString(data, Base64.DEFAULT);
+        assertThat(Base64Codec.decode(encoded, 0, encoded.length()), is(data));
+
+        String unpadded = "b" + Base64.encodeToString(new byte[] {1, 2}, Base64.NO_WRAP | Base64.NO_PADDING);
+        assertThat(Base64Codec.decode(unpadded, 1, unpadded.length()), is(new byte[] {1, 2}));
+        assertThat(Base64Codec.decode("AQ\r\nIDBA==\n", 0, 11), is(new byte[] {1, 2, 3, 4}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void base64CodecRejectsInvalidInput() {
+        Base64Codec.decode("AQI*", 0, 4);
+    }
+
+    @Test
+    public void encodedPacketMatchesEncoding() throws IOException {
+        EncodedPacket text = encodePacket(new Packet<String>(Packet.MESSAGE, "€uro"));
+        assertThat(text.isBinary(), is(false));
+        assertThat(text.textFrame(), is("4€uro"));
+        assertThat(text.payload().utf8(), is("4€uro"));
+        assertThat(encodePacket(text), is(text));
+
+        EncodedPacket binary = encodePacket(new Packet<byte[]>(Packet.MESSAGE, new byte[] {1, 2, 3}));
+        assertThat(binary.isBinary(), is(true));
+        assertThat(binary.binaryFrame().toByteArray(), is(new byte[] {1, 2, 3}));
+        assertThat(binary.payload().utf8(), is("bAQID"));
+        assertThat(binary.payload(), is(sameInstance(binary.payload())));
+
+        Buffer sink = new Buffer();
+        encodePayload(new Packet[] {text, binary, new Packet<String>(Packet.PING)}, sink);
+        assertThat(sink.readUtf8(), is("4€uro\u001ebAQID\u001e2"));
+
+        encodePayload(new Packet[] {binary, text}, new EncodeCallback<String>() {
+            @Override
+            public void call(String data) {
+                assertThat(data, is("bAQID\u001e4€uro"));
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encodedPacketRequiresKnownType() {
+        encodePacket(new Packet<String>("unknown", "data"));
+    }
+
+    @Test
+    public void decodePacketAsView() {
+        Packet packet = decodePacketView("4hello world");
+        assertThat(packet.type, is(Packet.MESSAGE));
+        assertThat(packet.data, instanceOf(StringSlice.class));
+
+        StringSlice data = (StringSlice) packet.data;
+        assertThat(data.length(), is(11));
+        assertThat(data.charAt(0), is('h'));
+        assertThat(data.contentEquals("hello world"), is(true));
+        assertThat(data.hashCode(), is("hello world".hashCode()));
+        assertThat(data.subSequence(6, 11).toString(), is("world"));
+        assertThat(data.toString(), is("hello world"));
+        assertThat(data.toString(), sameInstance(data.toString()));
+        assertThat(data, is((Object) new StringSlice("xhello world", 1, 12)));
+
+        assertThat(decodePacketView("4").data, nullValue());
+        assertThat(decodePacketView("3probe").data, is((Object) "probe"));
+        assertThat(decodePacketView("0{\"sid\":\"abc\"}").data, is((Object) "{\"sid\":\"abc\"}"));
+        assertThat(decodePacketView("x").type, is(Packet.ERROR));
+    }
+
+    @Test
+    public void decodePayloadViewsFromSource() throws IOException {
+        final List<Object> data = new ArrayList<Object>();
+        decodePayloadViews(new Buffer().writeUtf8("4€uro\u001ebAQID\u001e2probe"), new DecodePayloadCallback<CharSequence>() {
+            @Override
+            public boolean call(Packet<CharSequence> packet, int index, int total) {
+                data.add(packet.data);
+                return true;
+            }
+        });
+        assertThat(data.size(), is(3));
+        assertThat(((StringSlice) data.get(0)).contentEquals("€uro"), is(true));
+        assertThat((byte[]) data.get(1), is(new byte[] {1, 2, 3}));
+        assertThat(data.get(2), is((Object) "probe"));
+    }
 }
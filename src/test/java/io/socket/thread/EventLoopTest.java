@@ -0,0 +1,119 @@
+package io.socket.thread;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class EventLoopTest {
+
+    @Test
+    public void defaultLoopIsEventThread() throws InterruptedException {
+        final BlockingQueue<Boolean> queue = new LinkedBlockingQueue<Boolean>();
+
+        EventLoop.defaultLoop().exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(EventThread.isCurrent());
+                queue.offer(EventLoop.defaultLoop().isCurrent());
+            }
+        });
+
+        assertThat(queue.take(), is(true));
+        assertThat(queue.take(), is(true));
+    }
+
+    @Test
+    public void wrapExecutor() throws InterruptedException {
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final EventLoop loop = EventLoop.wrap(executor);
+            final EventLoop other = EventLoop.wrap(executor);
+
+            queue.offer(loop.isCurrent());
+            loop.exec(new Runnable() {
+                @Override
+                public void run() {
+                    queue.offer(loop.isCurrent());
+                    // another loop sharing the thread is not current
+                    queue.offer(other.isCurrent());
+                    loop.exec(new Runnable() {
+                        @Override
+                        public void run() {
+                            queue.offer(1);
+                        }
+                    });
+                    loop.nextTick(new Runnable() {
+                        @Override
+                        public void run() {
+                            queue.offer(3);
+                        }
+                    });
+                    queue.offer(2);
+                }
+            });
+
+            assertThat(queue.take(), is((Object) false));
+            assertThat(queue.take(), is((Object) true));
+            assertThat(queue.take(), is((Object) false));
+            assertThat(queue.take(), is((Object) 1));
+            assertThat(queue.take(), is((Object) 2));
+            assertThat(queue.take(), is((Object) 3));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void groupHandsOutLoopsInTurn() throws InterruptedException {
+        EventLoopGroup group = new EventLoopGroup(2);
+        EventLoop first = group.next();
+        EventLoop second = group.next();
+
+        assertThat(group.size(), is(2));
+        assertThat(first, is(not(sameInstance(second))));
+        assertThat(group.next(), is(sameInstance(first)));
+        assertThat(group.next(), is(sameInstance(second)));
+    }
+
+    @Test
+    public void groupLoopsRunOnTheirOwnThread() throws InterruptedException {
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+        EventLoopGroup group = new EventLoopGroup(2);
+        final EventLoop first = group.next();
+        final EventLoop second = group.next();
+
+        first.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(Thread.currentThread());
+                queue.offer(first.isCurrent());
+                queue.offer(second.isCurrent());
+                queue.offer(EventThread.isCurrent());
+            }
+        });
+        Thread firstThread = (Thread) queue.take();
+        assertThat(queue.take(), is((Object) true));
+        assertThat(queue.take(), is((Object) false));
+        assertThat(queue.take(), is((Object) false));
+
+        second.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(Thread.currentThread());
+            }
+        });
+        assertThat(queue.take(), is(not((Object) firstThread)));
+    }
+}
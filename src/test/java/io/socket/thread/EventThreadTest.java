@@ -89,4 +89,73 @@ public class EventThreadTest {
         }
         assertThat(threads.size(), is(1));
     }
+
+    @Test
+    public void keepThreadBetweenBursts() throws InterruptedException {
+        final BlockingQueue<Thread> queue = new LinkedBlockingQueue<Thread>();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(Thread.currentThread());
+            }
+        };
+
+        EventThread.exec(task);
+        Thread thread = queue.take();
+        Thread.sleep(50);
+        EventThread.exec(task);
+
+        assertThat(queue.take(), is(thread));
+    }
+
+    @Test
+    public void keepRunningAfterException() throws InterruptedException {
+        final BlockingQueue<Integer> queue = new LinkedBlockingQueue<Integer>();
+
+        EventThread.exec(new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("test");
+            }
+        });
+        EventThread.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(1);
+            }
+        });
+
+        assertThat(queue.take(), is(1));
+    }
+
+    @Test
+    public void submitFromManyThreads() throws InterruptedException {
+        final int producers = 4;
+        final int tasks = 10000;
+        final BlockingQueue<Integer> queue = new LinkedBlockingQueue<Integer>();
+        final Set<Thread> threads = new HashSet<Thread>();
+
+        for (int p = 0; p < producers; p++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < tasks; i++) {
+                        final int value = i;
+                        EventThread.nextTick(new Runnable() {
+                            @Override
+                            public void run() {
+                                threads.add(Thread.currentThread());
+                                queue.offer(value);
+                            }
+                        });
+                    }
+                }
+            }).start();
+        }
+
+        for (int i = 0; i < producers * tasks; i++) {
+            queue.take();
+        }
+        assertThat(threads.size(), is(1));
+    }
 }
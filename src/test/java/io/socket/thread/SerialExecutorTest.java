@@ -0,0 +1,68 @@
+package io.socket.thread;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class SerialExecutorTest {
+
+    @Test(timeout = 5000)
+    public void runInOrderOneAtATime() throws InterruptedException {
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+        final AtomicInteger running = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            SerialExecutor executor = new SerialExecutor(pool);
+            for (int i = 0; i < 1000; i++) {
+                final int value = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (running.incrementAndGet() != 1) {
+                            queue.offer("concurrent");
+                        }
+                        queue.offer(value);
+                        running.decrementAndGet();
+                    }
+                });
+            }
+
+            for (int i = 0; i < 1000; i++) {
+                assertThat(queue.take(), is((Object) i));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void keepRunningAfterException() throws InterruptedException {
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+        SerialExecutor executor = new SerialExecutor(VirtualThreads.executor());
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("test");
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(Thread.currentThread().isDaemon());
+            }
+        });
+
+        assertThat(queue.take(), is((Object) true));
+    }
+}
@@ -0,0 +1,36 @@
+package io.socket.thread;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class ThreadEventLoopTest {
+
+    @Test(timeout = 30000)
+    public void runTaskSubmittedWhileStopping() throws InterruptedException {
+        long keepAlive = TimeUnit.MICROSECONDS.toNanos(100);
+        ThreadEventLoop loop = new ThreadEventLoop("ThreadEventLoopTest", keepAlive);
+
+        for (int i = 0; i < 5000; i++) {
+            final CountDownLatch latch = new CountDownLatch(1);
+            // submit around the time the idle thread stops
+            LockSupport.parkNanos(keepAlive + (i % 16 - 8) * keepAlive / 32);
+            loop.nextTick(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+            // nothing else is submitted, so a lost task never runs
+            assertThat("task " + i, latch.await(1, TimeUnit.SECONDS), is(true));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package io.socket.thread;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class TimerWheelTest {
+
+    private static Runnable offer(final BlockingQueue<Object> queue, final Object value) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(value);
+            }
+        };
+    }
+
+    @Test(timeout = 5000)
+    public void runInDeadlineOrder() throws InterruptedException {
+        TimerWheel timer = new TimerWheel(5, TimeUnit.MILLISECONDS, 8);
+        BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+        timer.schedule(offer(queue, 3), 150, TimeUnit.MILLISECONDS);
+        timer.schedule(offer(queue, 1), 10, TimeUnit.MILLISECONDS);
+        timer.schedule(offer(queue, 2), 60, TimeUnit.MILLISECONDS);
+
+        assertThat(queue.take(), is((Object) 1));
+        assertThat(queue.take(), is((Object) 2));
+        assertThat(queue.take(), is((Object) 3));
+    }
+
+    @Test(timeout = 5000)
+    public void neverRunEarly() throws InterruptedException {
+        TimerWheel timer = new TimerWheel(10, TimeUnit.MILLISECONDS, 4);
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+        final long start = System.nanoTime();
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(System.nanoTime() - start);
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+
+        assertThat((Long) queue.take(), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100)));
+    }
+
+    @Test(timeout = 5000)
+    public void postpone() throws InterruptedException {
+        TimerWheel timer = new TimerWheel(5, TimeUnit.MILLISECONDS, 8);
+        BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+        long start = System.nanoTime();
+        TimerWheel.Timeout timeout = timer.schedule(offer(queue, "postponed"), 50, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(30);
+            assertThat(timeout.postpone(50, TimeUnit.MILLISECONDS), is(true));
+        }
+
+        assertThat(queue.take(), is((Object) "postponed"));
+        assertThat(System.nanoTime() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200)));
+        assertThat(timeout.isExpired(), is(true));
+        assertThat(timeout.postpone(50, TimeUnit.MILLISECONDS), is(false));
+    }
+
+    @Test(timeout = 5000)
+    public void cancel() throws InterruptedException {
+        TimerWheel timer = new TimerWheel(5, TimeUnit.MILLISECONDS, 8);
+        BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+        TimerWheel.Timeout timeout = timer.schedule(offer(queue, "cancelled"), 20, TimeUnit.MILLISECONDS);
+        timeout.cancel();
+        timer.schedule(offer(queue, "done"), 100, TimeUnit.MILLISECONDS);
+
+        assertThat(queue.take(), is((Object) "done"));
+        assertThat(queue.poll(), is(nullValue()));
+        assertThat(timeout.isCancelled(), is(true));
+        assertThat(timeout.postpone(50, TimeUnit.MILLISECONDS), is(false));
+    }
+
+    @Test(timeout = 5000)
+    public void runAfterSeveralRounds() throws InterruptedException {
+        // 4 buckets of 5 ms: the timeout goes around the wheel a few times
+        TimerWheel timer = new TimerWheel(5, TimeUnit.MILLISECONDS, 4);
+        BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+        long start = System.nanoTime();
+        timer.schedule(offer(queue, "done"), 120, TimeUnit.MILLISECONDS);
+
+        assertThat(queue.take(), is((Object) "done"));
+        long elapsed = System.nanoTime() - start;
+        assertThat(elapsed, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(120)));
+    }
+
+    @Test(timeout = 5000)
+    public void restartAfterIdle() throws InterruptedException {
+        TimerWheel timer = new TimerWheel(5, TimeUnit.MILLISECONDS, 8);
+        BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+        timer.schedule(offer(queue, 1), 10, TimeUnit.MILLISECONDS);
+        assertThat(queue.take(), is((Object) 1));
+
+        // let the worker stop
+        Thread.sleep(50);
+
+        timer.schedule(offer(queue, 2), 10, TimeUnit.MILLISECONDS);
+        assertThat(queue.take(), is((Object) 2));
+    }
+}
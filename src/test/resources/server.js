@@ -21,10 +21,23 @@ http.listen(port, function() {
   console.log('Engine.IO server listening on port', port);
 });
 
+// the reasons sessions were closed for, by session id
+var closeReasons = {};
+
 server.on('connection', function(socket) {
   socket.send('hi');
 
+  socket.on('close', function(reason) {
+    closeReasons[socket.id] = reason;
+  });
+
   socket.on('message', function(message) {
+    // tells how another session was closed, or "open" if it is not
+    var match = /^closeReason (.*)$/.exec(message);
+    if (match) {
+      socket.send(closeReasons[match[1]] || 'open');
+      return;
+    }
     socket.send(message);
   });
 